@@ -20,7 +20,7 @@ echo MACVERSION="${MACVERSION}"
 FILES="changelogs conf html lib resource contrib"
 FILES="${FILES} 3RD-PARTY-LICENSES.txt AUTHORS.txt LICENSE.txt"
 FILES="${FILES} DEVELOPERS-GUIDE.md OPERATORS-GUIDE.md README.md README.txt USERS-GUIDE.md"
-FILES="${FILES} run.bat run.sh run-desktop.sh start.sh stop.sh compact.sh compact.bat sign.sh"
+FILES="${FILES} run.bat run.sh run-desktop.sh start.sh stop.sh compact.sh compact.bat migrate.sh migrate.bat sign.sh"
 FILES="${FILES} Elastic_Wallet.url Dockerfile elastic.policy elasticdesktop.policy elastic.exe elasticservice.exe"
 
 echo compile
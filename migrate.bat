@@ -0,0 +1,14 @@
+@REM Convert the XEL NRS database between the H2 PageStore and MVStore
+@echo *********************************************************************
+@echo * This batch file will convert the XEL NRS database to the H2       *
+@echo * MVStore (migrate.bat mvstore) or back to the H2 PageStore         *
+@echo * (migrate.bat pagestore).  This process can take a long time.  Do  *
+@echo * not interrupt the batch file or shutdown the computer until it    *
+@echo * finishes.                                                         *
+@echo *********************************************************************
+
+if exist jre ( 
+    set javaDir=jre\bin\
+)
+
+%javaDir%java.exe -Xmx1024m -cp "classes;lib/*;conf" -Dnxt.runtime.mode=desktop nxt.tools.MigrateDatabase %1
@@ -0,0 +1,16 @@
+#!/bin/sh
+echo "***********************************************************************"
+echo "* This shell script will convert the XEL NRS database to the H2       *"
+echo "* MVStore (./migrate.sh mvstore) or back to the H2 PageStore          *"
+echo "* (./migrate.sh pagestore). This process can take a long time.  Do    *"
+echo "* not interrupt the script or shutdown the computer until it finishes.*"
+echo "*                                                                     *"
+echo "* To migrate the database used while in a desktop mode, i.e. located  *"
+echo "* under ~/.elastic/ , invoke this script as:                          *"
+echo "* ./migrate.sh mvstore -Dnxt.runtime.mode=desktop                     *"
+echo "***********************************************************************"
+
+ENGINE=$1
+shift
+java -Xmx1024m -cp "classes:lib/*:conf" $@ nxt.tools.MigrateDatabase $ENGINE
+exit $?
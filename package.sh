@@ -12,7 +12,7 @@ FILES="changelogs classes conf html lib src resource addons"
 FILES="${FILES} elastic.jar elasticservice.jar"
 FILES="${FILES} 3RD-PARTY-LICENSES.txt AUTHORS.txt COPYING.txt LICENSE.txt"
 FILES="${FILES} DEVELOPERS-GUIDE.md OPERATORS-GUIDE.md README.md README.txt USERS-GUIDE.md"
-FILES="${FILES} run.bat run.sh run-desktop.sh start.sh stop.sh compact.sh compact.bat sign.sh"
+FILES="${FILES} run.bat run.sh run-desktop.sh start.sh stop.sh compact.sh compact.bat migrate.sh migrate.bat sign.sh"
 FILES="${FILES} elastic.policy elasticdesktop.policy Elastic_Wallet.url"
 FILES="${FILES} compile.sh javadoc.sh jar.sh package.sh"
 FILES="${FILES} win-compile.sh win-javadoc.sh win-package.sh"
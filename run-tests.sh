@@ -3,7 +3,7 @@ CP=conf/:classes/:lib/*:testlib/*
 SP=src/:test/
 
 if [ $# -eq 0 ]; then
-TESTS="nxt.crypto.Curve25519Test nxt.crypto.ReedSolomonTest nxt.peer.HallmarkTest nxt.TokenTest nxt.RedeemTest nxt.ManualForgingTest nxt.BigDecimalTest nxt.GenesisAmountsTest nxt.BitcoinJTest nxt.SpongycastleTest"
+TESTS="nxt.crypto.Curve25519Test nxt.crypto.ReedSolomonTest nxt.peer.HallmarkTest nxt.TokenTest nxt.RedeemTest nxt.ManualForgingTest nxt.BigDecimalTest nxt.GenesisAmountsTest nxt.BitcoinJTest nxt.SpongycastleTest nxt.computation.CompositeBufferReaderTest nxt.db.VersionedEntityDbTableTest nxt.db.PendingInsertsTest nxt.db.StatementCacheTest nxt.db.DbConnectionPoolTest nxt.db.StorageEngineTest nxt.tools.MigrateDatabaseTest nxt.db.LongKeyMapTest nxt.db.DbIteratorTest nxt.db.DbCursorTest nxt.db.OnlineCompactTest nxt.db.SqlStatisticsTest nxt.db.IndexAdvisorTest nxt.db.DbSnapshotTest nxt.db.CommitExecutorTest nxt.SnapshotTest nxt.ScanResumeTest"
 else
 TESTS=$@
 fi
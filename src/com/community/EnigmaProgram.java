@@ -87,14 +87,7 @@ public class EnigmaProgram {
 
     public boolean isPow(int[] currentTarget) {
         if(pow_hash==null) return false;
-        for (int i = 0; i < 4; i++) {
-            int res = Integer.compareUnsigned(pow_hash[i], currentTarget[i]);
-            if (res > 0)
-                return false;
-            else if (res < 0)
-                return true;    // POW Solution Found
-        }
-        return false;
+        return Convert.compareUnsigned(pow_hash, currentTarget) < 0;    // POW Solution Found
     }
     private static final byte[] intToByteArray(int value)
     {
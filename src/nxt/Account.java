@@ -548,9 +548,9 @@ public final class Account {
     }
 
     public static Account getAccount(long id) {
-        DbKey dbKey = accountDbKeyFactory.newKey(id);
-        Account account = accountTable.get(dbKey);
+        Account account = accountTable.get(id);
         if (account == null) {
+            DbKey dbKey = accountDbKeyFactory.newKey(id);
             PublicKey publicKey = publicKeyTable.get(dbKey);
             if (publicKey != null) {
                 account = accountTable.newEntity(dbKey);
@@ -616,9 +616,9 @@ public final class Account {
         if (id == 0) {
             throw new IllegalArgumentException("Invalid accountId 0");
         }
-        DbKey dbKey = accountDbKeyFactory.newKey(id);
-        Account account = accountTable.get(dbKey);
+        Account account = accountTable.get(id);
         if (account == null) {
+            DbKey dbKey = accountDbKeyFactory.newKey(id);
             account = accountTable.newEntity(dbKey);
             PublicKey publicKey = publicKeyTable.get(dbKey);
             if (publicKey == null) {
@@ -1009,10 +1009,9 @@ public final class Account {
 
 
     static boolean setOrVerify(long accountId, byte[] key) {
-        DbKey dbKey = publicKeyDbKeyFactory.newKey(accountId);
-        PublicKey publicKey = publicKeyTable.get(dbKey);
+        PublicKey publicKey = publicKeyTable.get(accountId);
         if (publicKey == null) {
-            publicKey = publicKeyTable.newEntity(dbKey);
+            publicKey = publicKeyTable.newEntity(publicKeyDbKeyFactory.newKey(accountId));
         }
         if (publicKey.publicKey == null) {
             publicKey.publicKey = key;
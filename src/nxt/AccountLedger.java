@@ -16,6 +16,7 @@
 
 package nxt;
 
+import nxt.db.DbCursor;
 import nxt.db.DbUtils;
 import nxt.db.DerivedDbTable;
 import nxt.util.Convert;
@@ -310,6 +311,25 @@ public class AccountLedger {
     public static List<LedgerEntry> getEntries(long accountId, LedgerEvent event, long eventId,
                                                 LedgerHolding holding, long holdingId,
                                                 int firstIndex, int lastIndex) {
+        return getEntries(accountId, event, eventId, holding, holdingId, null, firstIndex, lastIndex);
+    }
+
+    /**
+     * Return the ledger entries sorted in descending insert order, after the cursor
+     *
+     * @param   accountId                   Account identifier or zero if no account identifier
+     * @param   event                       Ledger event or null
+     * @param   eventId                     Ledger event identifier or zero if no event identifier
+     * @param   holding                     Ledger holding or null
+     * @param   holdingId                   Ledger holding identifier or zero if no holding identifier
+     * @param   cursor                      Ledger identifier of the last entry of the previous page or null
+     * @param   firstIndex                  First matching entry index after the cursor, inclusive
+     * @param   lastIndex                   Last matching entry index after the cursor, inclusive
+     * @return                              List of ledger entries
+     */
+    public static List<LedgerEntry> getEntries(long accountId, LedgerEvent event, long eventId,
+                                                LedgerHolding holding, long holdingId, DbCursor cursor,
+                                                int firstIndex, int lastIndex) {
         if (!ledgerEnabled) {
             return Collections.emptyList();
         }
@@ -340,6 +360,10 @@ public class AccountLedger {
             if (holdingId != 0)
                 sb.append("AND holding_id = ? ");
         }
+        if (cursor != null) {
+            sb.append(accountId != 0 || event != null || holding != null ? "AND" : "WHERE");
+            sb.append(DbUtils.cursorClause(cursor, "db_id"));
+        }
         sb.append("ORDER BY db_id DESC ");
         sb.append(DbUtils.limitsClause(firstIndex, lastIndex));
         //
@@ -364,6 +388,7 @@ public class AccountLedger {
                     pstmt.setLong(++i, holdingId);
                 }
             }
+            i = DbUtils.setCursor(++i, pstmt, cursor) - 1;
             DbUtils.setLimits(++i, pstmt, firstIndex, lastIndex);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -65,6 +65,8 @@ public interface Block {
 
     long getPowTarget();
 
+    int[] getWorkTarget();
+
     int getPowLastMass();
 
     int getPowMass();
@@ -82,4 +84,6 @@ public interface Block {
     JSONObject getJSONObject();
 
     long getPreviousBlockPowTarget();
+
+    int[] getPreviousBlockWorkTarget();
 }
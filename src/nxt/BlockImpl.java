@@ -18,6 +18,7 @@
 package nxt;
 
 import nxt.AccountLedger.LedgerEvent;
+import nxt.computation.Commons;
 import nxt.computation.ComputationConstants;
 import nxt.crypto.Crypto;
 import nxt.db.DbIterator;
@@ -57,6 +58,7 @@ final class BlockImpl implements Block {
     private BigInteger cumulativeDifficulty = BigInteger.ZERO;
     private long baseTarget = Constants.INITIAL_BASE_TARGET;
     private long powTarget = 0;
+    private volatile int[] workTarget = null;
     private int powLastMass = 0;
     private int powMass = 0;
     private long targetLastMass = 0;
@@ -225,6 +227,17 @@ final class BlockImpl implements Block {
         return powTarget;
     }
 
+    // shared by all callers, must not be modified
+    @Override
+    public int[] getWorkTarget() {
+        int[] target = workTarget;
+        if (target == null) {
+            target = Commons.getWorkTarget(powTarget);
+            workTarget = target;
+        }
+        return target;
+    }
+
     @Override
     public int getPowLastMass() {
         return powLastMass;
@@ -342,6 +355,17 @@ final class BlockImpl implements Block {
         }
     }
 
+    @Override
+    public int[] getPreviousBlockWorkTarget() {
+        BlockImpl previousBlock = BlockchainImpl.getInstance().getBlock(getPreviousBlockId());
+        if (previousBlock == null || previousBlock.getPowTarget() == 0) {
+            Logger.logErrorMessage("Fatal error came up: previous block target seems to be 0! Block ID of parent " +
+                    "block: " + getStringId());
+            return Commons.getWorkTarget(1);
+        }
+        return previousBlock.getWorkTarget();
+    }
+
     static BlockImpl parseBlock(JSONObject blockData) throws NxtException.NotValidException {
         try {
             int version = ((Long) blockData.get("version")).intValue();
@@ -647,6 +671,8 @@ final class BlockImpl implements Block {
             targetLastMass = powTarget;
         }
 
+        workTarget = Commons.getWorkTarget(powTarget);
+
         Logger.logInfoMessage("Block " + this.getHeight() + " POW retarget; powLastMass=" + powLastMass + ", powMass=" +
                         powMass + ", targetLastMass=" + targetLastMass + ", targetMass=" + targetMass + ", a=" + nActualTimespan + ", t=" +  nTargetTimespan + "\t-> TARGET = " + powTarget);
 
@@ -16,6 +16,7 @@
 
 package nxt;
 
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import nxt.util.Filter;
 
@@ -34,6 +35,10 @@ public interface Blockchain {
 
     void updateUnlock();
 
+    void writeLock();
+
+    void writeUnlock();
+
     Block getLastBlock();
 
     Block getLastBlock(int timestamp);
@@ -91,6 +96,10 @@ public interface Blockchain {
                                                       int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
                                                       int from, int to, boolean includeExpiredPrunable, boolean executedOnly);
 
+    DbIterator<? extends Transaction> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
+                                                      int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
+                                                      DbCursor cursor, int from, int to, boolean includeExpiredPrunable, boolean executedOnly);
+
     DbIterator<? extends Transaction> getTransactions(Connection con, PreparedStatement pstmt);
 
     List<? extends Transaction> getExpectedTransactions(Filter<Transaction> filter);
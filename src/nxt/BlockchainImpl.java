@@ -17,6 +17,7 @@
 package nxt;
 
 import nxt.computation.ComputationConstants;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import nxt.db.DbUtils;
 import nxt.util.Convert;
@@ -34,6 +35,8 @@ final class BlockchainImpl implements Blockchain {
 
     private static final BlockchainImpl instance = new BlockchainImpl();
 
+    private static final String[] TRANSACTION_CURSOR_COLUMNS = {"transaction.block_timestamp", "transaction.transaction_index"};
+
     static BlockchainImpl getInstance() {
         return instance;
     }
@@ -63,11 +66,13 @@ final class BlockchainImpl implements Blockchain {
         lock.updateLock().unlock();
     }
 
-    void writeLock() {
+    @Override
+    public void writeLock() {
         lock.writeLock().lock();
     }
 
-    void writeUnlock() {
+    @Override
+    public void writeUnlock() {
         lock.writeLock().unlock();
     }
 
@@ -91,7 +96,8 @@ final class BlockchainImpl implements Blockchain {
 
         // Does not need to be super efficient because only executed ONCE on program start
 
-        int ret = ComputationConstants.START_ENCODING_BLOCK;
+        // nothing processed yet means that the catch up has to start at the first encoding block
+        int ret = ComputationConstants.START_ENCODING_BLOCK - 1;
         Connection con = null;
         try {
             con = Db.db.getConnection();
@@ -417,6 +423,14 @@ final class BlockchainImpl implements Blockchain {
     public DbIterator<TransactionImpl> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
                                                        int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
                                                        int from, int to, boolean includeExpiredPrunable, boolean executedOnly) {
+        return getTransactions(accountId, numberOfConfirmations, type, subtype, blockTimestamp, withMessage, phasedOnly,
+                nonPhasedOnly, null, from, to, includeExpiredPrunable, executedOnly);
+    }
+
+    @Override
+    public DbIterator<TransactionImpl> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
+                                                       int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
+                                                       DbCursor cursor, int from, int to, boolean includeExpiredPrunable, boolean executedOnly) {
         if (phasedOnly && nonPhasedOnly) {
             throw new IllegalArgumentException("At least one of phasedOnly or nonPhasedOnly must be false");
         }
@@ -457,6 +471,9 @@ final class BlockchainImpl implements Blockchain {
             if (executedOnly && !nonPhasedOnly) {
                 buf.append("AND (phased = FALSE OR approved = TRUE) ");
             }
+            if (cursor != null) {
+                buf.append("AND").append(DbUtils.cursorClause(cursor, TRANSACTION_CURSOR_COLUMNS));
+            }
             buf.append("UNION ALL SELECT transaction.* FROM transaction ");
             if (executedOnly && !nonPhasedOnly) {
                 buf.append(" LEFT JOIN phasing_poll_result ON transaction.id = phasing_poll_result.id ");
@@ -486,6 +503,9 @@ final class BlockchainImpl implements Blockchain {
             if (executedOnly && !nonPhasedOnly) {
                 buf.append("AND (phased = FALSE OR approved = TRUE) ");
             }
+            if (cursor != null) {
+                buf.append("AND").append(DbUtils.cursorClause(cursor, TRANSACTION_CURSOR_COLUMNS));
+            }
 
             buf.append("ORDER BY block_timestamp DESC, transaction_index DESC");
             buf.append(DbUtils.limitsClause(from, to));
@@ -513,6 +533,7 @@ final class BlockchainImpl implements Blockchain {
             if (withMessage) {
                 pstmt.setInt(++i, prunableExpiration);
             }
+            i = DbUtils.setCursor(++i, pstmt, cursor) - 1;
             pstmt.setLong(++i, accountId);
             if (blockTimestamp > 0) {
                 pstmt.setInt(++i, blockTimestamp);
@@ -529,8 +550,9 @@ final class BlockchainImpl implements Blockchain {
             if (withMessage) {
                 pstmt.setInt(++i, prunableExpiration);
             }
+            i = DbUtils.setCursor(++i, pstmt, cursor) - 1;
             DbUtils.setLimits(++i, pstmt, from, to);
-            return getTransactions(con, pstmt);
+            return getTransactions(con, pstmt).trackCursor(TRANSACTION_CURSOR_COLUMNS);
         } catch (SQLException e) {
             DbUtils.close(con);
             throw new RuntimeException(e.toString(), e);
@@ -63,6 +63,8 @@ public interface BlockchainProcessor extends Observable<Block,BlockchainProcesso
 
     void registerDerivedTable(DerivedDbTable table);
 
+    List<DerivedDbTable> getDerivedTables();
+
     void trimDerivedTables();
 
     int restorePrunedData();
@@ -35,6 +35,7 @@ import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 import org.json.simple.JSONValue;
 
+import java.io.File;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.sql.Connection;
@@ -186,6 +187,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
     private final ExecutorService networkService = Executors.newCachedThreadPool();
     private final List<DerivedDbTable> derivedTables = new CopyOnWriteArrayList<>();
     private final boolean trimDerivedTables = Nxt.getBooleanProperty("nxt.trimDerivedTables");
+    private final int onlineCompactTime = Nxt.getIntProperty("nxt.dbOnlineCompactTime");
     private final int defaultNumberOfForkConfirmations = Nxt.getIntProperty(Constants.isTestnet
             ? "nxt.testnetNumberOfForkConfirmations" : "nxt.numberOfForkConfirmations");
     private final boolean simulateEndlessDownload = Nxt.getBooleanProperty("nxt.simulateEndlessDownload");
@@ -1070,6 +1072,9 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                 isTrimming = true;
                 networkService.submit(() -> {
                     trimDerivedTables();
+                    if (onlineCompactTime > 0) {
+                        Db.db.compact(onlineCompactTime);
+                    }
                     isTrimming = false;
                 });
             }
@@ -1087,27 +1092,16 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 
         ThreadPool.runBeforeStart(() -> {
             alreadyInitialized = true;
+            String snapshotFile = Nxt.getStringProperty("nxt.importSnapshot");
+            if (snapshotFile != null && !BlockDb.hasBlock(Genesis.GENESIS_BLOCK_ID, 0)) {
+                Snapshot.importSnapshot(new File(snapshotFile));
+            }
             if (addGenesisBlock()) {
                 scan(0, false);
             } else if (Nxt.getBooleanProperty("nxt.forceScan")) {
                 scan(0, Nxt.getBooleanProperty("nxt.forceValidate"));
             } else {
-                boolean rescan;
-                boolean validate;
-                int height;
-                try (Connection con = Db.db.getConnection();
-                     Statement stmt = con.createStatement();
-                     ResultSet rs = stmt.executeQuery("SELECT * FROM scan")) {
-                    rs.next();
-                    rescan = rs.getBoolean("rescan");
-                    validate = rs.getBoolean("validate");
-                    height = rs.getInt("height");
-                } catch (SQLException e) {
-                    throw new RuntimeException(e.toString(), e);
-                }
-                if (rescan) {
-                    scan(height, validate);
-                }
+                resumeScan();
             }
         }, false);
 
@@ -1154,6 +1148,11 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
         lastTrimHeight = Math.max(blockchain.getHeight() - Constants.MAX_ROLLBACK, 0);
         if (lastTrimHeight > 0) {
             for (DerivedDbTable table : derivedTables) {
+                if (table.isTrimmedInChunks()) {
+                    table.trim(lastTrimHeight);
+                    Db.db.commitTransaction();
+                    continue;
+                }
                 blockchain.readLock();
                 try {
                     table.trim(lastTrimHeight);
@@ -1165,7 +1164,8 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
         }
     }
 
-    List<DerivedDbTable> getDerivedTables() {
+    @Override
+    public List<DerivedDbTable> getDerivedTables() {
         return derivedTables;
     }
 
@@ -1949,7 +1949,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 
     void scheduleScan(int height, boolean validate) {
         try (Connection con = Db.db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("UPDATE scan SET rescan = TRUE, height = ?, validate = ?")) {
+             PreparedStatement pstmt = con.prepareStatement("UPDATE scan SET rescan = TRUE, height = ?, validate = ?, applied_height = -1")) {
             pstmt.setInt(1, height);
             pstmt.setBoolean(2, validate);
             pstmt.executeUpdate();
@@ -1959,17 +1959,41 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
         }
     }
 
+    void resumeScan() {
+        boolean rescan;
+        boolean validate;
+        int height;
+        int appliedHeight;
+        try (Connection con = Db.db.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM scan")) {
+            rs.next();
+            rescan = rs.getBoolean("rescan");
+            validate = rs.getBoolean("validate");
+            height = rs.getInt("height");
+            appliedHeight = rs.getInt("applied_height");
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        if (rescan) {
+            // an interrupted scan only needs to apply the blocks after the last one it committed,
+            // the last block is applied again if it is the top of the chain to have a block to start from
+            int resumeHeight = appliedHeight >= height ? Math.max(height, Math.min(appliedHeight + 1, blockchain.getHeight())) : height;
+            scan(height, resumeHeight, validate, false);
+        }
+    }
+
     @Override
     public void scan(int height, boolean validate) {
-        scan(height, validate, false);
+        scan(height, height, validate, false);
     }
 
     @Override
     public void fullScanWithShutdown() {
-        scan(0, true, true);
+        scan(0, 0, true, true);
     }
 
-    private void scan(int height, boolean validate, boolean shutdown) {
+    private void scan(int height, int resumeHeight, boolean validate, boolean shutdown) {
         blockchain.writeLock();
         try {
             if (!Db.db.isInTransaction()) {
@@ -1978,7 +2002,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                     if (validate) {
                         blockListeners.addListener(checksumListener, Event.BLOCK_SCANNED);
                     }
-                    scan(height, validate, shutdown);
+                    scan(height, resumeHeight, validate, shutdown);
                     Db.db.commitTransaction();
                 } catch (Exception e) {
                     Db.db.rollbackTransaction();
@@ -1989,52 +2013,60 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                 }
                 return;
             }
-            scheduleScan(height, validate);
-            if (height > 0 && height < getMinRollbackHeight()) {
-                Logger.logMessage("Rollback to height less than " + getMinRollbackHeight() + " not supported, will do a full scan");
-                height = 0;
-            }
-            if (height < 0) {
-                height = 0;
+            if (resumeHeight > height) {
+                // derived tables were committed together with the applied height and hold nothing above it,
+                // so the minimum rollback height does not apply when rolling back to resumeHeight - 1
+                Logger.logMessage("Resuming interrupted scan from height " + height + " at height " + resumeHeight);
+            } else {
+                if (height > 0 && height < getMinRollbackHeight()) {
+                    Logger.logMessage("Rollback to height less than " + getMinRollbackHeight() + " not supported, will do a full scan");
+                    height = 0;
+                }
+                if (height < 0) {
+                    height = 0;
+                }
+                scheduleScan(height, validate);
+                resumeHeight = height;
             }
-            Logger.logMessage("Scanning blockchain starting from height " + height + "...");
+            Logger.logMessage("Scanning blockchain starting from height " + resumeHeight + "...");
             if (validate) {
                 Logger.logDebugMessage("Also verifying signatures and validating transactions...");
             }
             try (Connection con = Db.db.getConnection();
-                 PreparedStatement pstmtSelect = con.prepareStatement("SELECT * FROM block WHERE " + (height > 0 ? "height >= ? AND " : "")
+                 PreparedStatement pstmtSelect = con.prepareStatement("SELECT * FROM block WHERE " + (resumeHeight > 0 ? "height >= ? AND " : "")
                          + " db_id >= ? ORDER BY db_id ASC LIMIT 50000");
-                 PreparedStatement pstmtDone = con.prepareStatement("UPDATE scan SET rescan = FALSE, height = 0, validate = FALSE")) {
+                 PreparedStatement pstmtApplied = con.prepareStatement("UPDATE scan SET applied_height = ?");
+                 PreparedStatement pstmtDone = con.prepareStatement("UPDATE scan SET rescan = FALSE, height = 0, validate = FALSE, applied_height = -1")) {
                 isScanning = true;
                 initialScanHeight = blockchain.getHeight();
-                if (height > blockchain.getHeight() + 1) {
-                    Logger.logMessage("Rollback height " + (height - 1) + " exceeds current blockchain height of " + blockchain.getHeight() + ", no scan needed");
+                if (resumeHeight > blockchain.getHeight() + 1) {
+                    Logger.logMessage("Rollback height " + (resumeHeight - 1) + " exceeds current blockchain height of " + blockchain.getHeight() + ", no scan needed");
                     pstmtDone.executeUpdate();
                     Db.db.commitTransaction();
                     return;
                 }
-                if (height == 0) {
+                if (resumeHeight == 0) {
                     Logger.logDebugMessage("Dropping all full text search indexes");
                     FullTextTrigger.dropAll(con);
                 }
                 for (DerivedDbTable table : derivedTables) {
-                    if (height == 0) {
+                    if (resumeHeight == 0) {
                         table.truncate();
                     } else {
-                        table.rollback(height - 1);
+                        table.rollback(resumeHeight - 1);
                     }
                 }
                 Db.db.clearCache();
                 Db.db.commitTransaction();
                 Logger.logDebugMessage("Rolled back derived tables");
-                BlockImpl currentBlock = BlockDb.findBlockAtHeight(height);
+                BlockImpl currentBlock = BlockDb.findBlockAtHeight(resumeHeight);
                 blockListeners.notify(currentBlock, Event.RESCAN_BEGIN);
                 long currentBlockId = currentBlock.getId();
-                if (height == 0) {
+                if (resumeHeight == 0) {
                     blockchain.setLastBlock(currentBlock); // special case to avoid no last block
                     Account.addOrGetAccount(Genesis.CREATOR_ID).apply(Genesis.CREATOR_PUBLIC_KEY);
                 } else {
-                    blockchain.setLastBlock(BlockDb.findBlockAtHeight(height - 1));
+                    blockchain.setLastBlock(BlockDb.findBlockAtHeight(resumeHeight - 1));
                 }
                 if (shutdown) {
                     Logger.logMessage("Scan will be performed at next start");
@@ -2042,8 +2074,8 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                     return;
                 }
                 int pstmtSelectIndex = 1;
-                if (height > 0) {
-                    pstmtSelect.setInt(pstmtSelectIndex++, height);
+                if (resumeHeight > 0) {
+                    pstmtSelect.setInt(pstmtSelectIndex++, resumeHeight);
                 }
                 long dbId = Long.MIN_VALUE;
                 boolean hasMore = true;
@@ -2091,6 +2123,8 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                                 blockchain.setLastBlock(currentBlock);
                                 accept(currentBlock, validPhasedTransactions, invalidPhasedTransactions, duplicates);
                                 currentBlockId = currentBlock.getNextBlockId();
+                                pstmtApplied.setInt(1, currentBlock.getHeight());
+                                pstmtApplied.executeUpdate();
                                 Db.db.clearCache();
                                 Db.db.commitTransaction();
                                 blockListeners.notify(currentBlock, Event.AFTER_BLOCK_ACCEPT);
@@ -34,6 +34,13 @@ public final class Db {
             .loginTimeout(Nxt.getIntProperty("nxt.dbLoginTimeout"))
             .defaultLockTimeout(Nxt.getIntProperty("nxt.dbDefaultLockTimeout") * 1000)
             .maxMemoryRows(Nxt.getIntProperty("nxt.dbMaxMemoryRows"))
+            .statementCacheSize(Nxt.getIntProperty("nxt.dbStatementCacheSize"))
+            .connectionPool(Nxt.getStringProperty("nxt.dbConnectionPool", "nxt"))
+            .maxTransactionConnections(Nxt.getIntProperty("nxt.maxDbTransactionConnections"))
+            .connectionLeakThreshold(Nxt.getIntProperty("nxt.dbConnectionLeakThreshold"))
+            .shutdownCompact(Nxt.getBooleanProperty("nxt.dbShutdownCompact"))
+            .collectStatistics(Nxt.getBooleanProperty("nxt.dbStatistics"))
+            .commitQueueSize(Nxt.getIntProperty("nxt.dbCommitQueueSize"))
     );
 
     static void init() {
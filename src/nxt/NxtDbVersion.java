@@ -1137,8 +1137,8 @@ class NxtDbVersion extends DbVersion {
                 apply("CREATE INDEX IF NOT EXISTS referenced_transaction_referenced_transaction_id_idx ON referenced_transaction (referenced_transaction_id)");
             case 473:
                 BlockDb.deleteBlocksFromHeight(Constants.SHUFFLING_BLOCK);
-                BlockchainProcessorImpl.getInstance().scheduleScan(0, false);
-                apply(null);
+                // not using scheduleScan, the scan table has no applied_height column before update 503
+                apply("UPDATE scan SET rescan = TRUE, height = 0, validate = FALSE");
             case 474:
                 apply("DROP INDEX IF EXISTS phasing_poll_linked_transaction_id_link_idx");
             case 475:
@@ -1225,8 +1225,23 @@ class NxtDbVersion extends DbVersion {
             case 498:
                 apply("CREATE INDEX IF NOT EXISTS pow_and_bountyD ON pow_and_bounty (height)");
             case 499:
-                return;
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bountyE ON pow_and_bounty (hash)");
             case 500:
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bountyF ON pow_and_bounty (work_id, multiplier)");
+            case 501:
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bountyG ON pow_and_bounty (work_id, verificator_hash)");
+            case 502:
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bountyH ON pow_and_bounty (work_id, account_id)");
+            case 503:
+                apply("ALTER TABLE scan ADD COLUMN IF NOT EXISTS applied_height INT NOT NULL DEFAULT -1");
+            case 504:
+                apply("ALTER TABLE scan ADD COLUMN IF NOT EXISTS bulk_load BOOLEAN NOT NULL DEFAULT FALSE");
+            case 505:
+                // bulk load was removed, a node stopped during one has no full text search indexes, rebuild them
+                apply("UPDATE scan SET rescan = TRUE, height = 0, validate = FALSE, applied_height = -1 WHERE bulk_load = TRUE");
+            case 506:
+                apply("ALTER TABLE scan DROP COLUMN IF EXISTS bulk_load");
+            case 507:
                 return;
             default:
                 throw new RuntimeException("Blockchain database inconsistent with code, at update " + nextUpdate
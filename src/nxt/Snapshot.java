@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ * Copyright © 2017 The XEL Core Developers.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import nxt.crypto.Crypto;
+import nxt.db.DbSnapshot;
+import nxt.db.DerivedDbTable;
+import nxt.db.FullTextTrigger;
+import nxt.util.Convert;
+import nxt.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Export and import of the blockchain state as a database snapshot, used to bootstrap a node without downloading
+ * and applying the whole blockchain.
+ * <p>
+ * The snapshot contains the block and transaction tables and all rows of the derived tables, which after trimming
+ * are the latest rows plus the versions needed to roll back up to the maximum rollback depth.  Unconfirmed
+ * transactions, peers and the scan state are not included.
+ */
+public final class Snapshot {
+
+    private static final List<String> SKIPPED_TABLES = Arrays.asList("version", "scan", "peer", "unconfirmed_transaction");
+
+    /**
+     * Export a snapshot at the current height to a file named snapshot-height.nxs.  Blocks are not accepted while
+     * the snapshot is written.
+     *
+     * @param   dir             Snapshot directory
+     * @return                  Snapshot file
+     * @throws  IOException     I/O error
+     */
+    public static File export(File dir) throws IOException {
+        Blockchain blockchain = Nxt.getBlockchain();
+        File file = null;
+        File tempFile = null;
+        blockchain.readLock();
+        try {
+            BlockImpl lastBlock = BlockchainImpl.getInstance().getLastBlock();
+            file = new File(dir, "snapshot-" + lastBlock.getHeight() + ".nxs");
+            tempFile = new File(dir, file.getName() + ".tmp");
+            byte[] hash;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile), 65536)) {
+                hash = DbSnapshot.write(Db.db, out, getTables(), lastBlock.getHeight(), lastBlock.getId(),
+                        Crypto.sha256().digest(lastBlock.bytes()));
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Logger.logMessage("Exported snapshot at height " + lastBlock.getHeight() + " to " + file.getPath()
+                    + ", SHA-256 " + Convert.toHexString(hash));
+        } finally {
+            blockchain.readUnlock();
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                Logger.logErrorMessage("Unable to delete " + tempFile.getPath());
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Load a snapshot into a database which does not have any blocks yet.  The node continues downloading blocks
+     * from the snapshot height.  The snapshot is only loaded if its last block is the one configured with
+     * nxt.importSnapshotBlockId, the checksums of the file protect against corruption only.
+     *
+     * @param   file            Snapshot file
+     */
+    static void importSnapshot(File file) {
+        String trustedBlockId = Nxt.getStringProperty("nxt.importSnapshotBlockId");
+        if (trustedBlockId == null) {
+            throw new RuntimeException("Not importing snapshot " + file.getPath()
+                    + ", nxt.importSnapshotBlockId must be set to the id of its last block as published by a trusted source");
+        }
+        importSnapshot(file, Convert.parseUnsignedLong(trustedBlockId));
+    }
+
+    static void importSnapshot(File file, long trustedBlockId) {
+        Logger.logMessage("Importing snapshot " + file.getPath());
+        List<DerivedDbTable> derivedTables = BlockchainProcessorImpl.getInstance().getDerivedTables();
+        try {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 65536)) {
+                DbSnapshot.Header header = DbSnapshot.readHeader(in);
+                if (header.getBlockId() != trustedBlockId) {
+                    throw new IOException("Snapshot block " + Long.toUnsignedString(header.getBlockId())
+                            + " is not the trusted block " + Long.toUnsignedString(trustedBlockId));
+                }
+            }
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 65536)) {
+                try (Connection con = Db.db.getConnection()) {
+                    FullTextTrigger.dropAll(con);
+                }
+                DbSnapshot.Header header = DbSnapshot.load(Db.db, in, (con, snapshot) -> verifyLastBlock(con, snapshot));
+                try (Connection con = Db.db.getConnection()) {
+                    for (DerivedDbTable table : derivedTables) {
+                        table.createSearchIndex(con);
+                    }
+                }
+                Logger.logMessage("Imported snapshot at height " + header.getHeight());
+            }
+        } catch (IOException | SQLException e) {
+            throw new RuntimeException("Unable to import snapshot " + file.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void verifyLastBlock(Connection con, DbSnapshot.Header header) {
+        try (PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE height = ?")) {
+            pstmt.setInt(1, header.getHeight());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("Snapshot does not contain the block at height " + header.getHeight());
+                }
+                BlockImpl block = BlockDb.loadBlock(con, rs, true);
+                if (block.getId() != header.getBlockId()
+                        || !Arrays.equals(Crypto.sha256().digest(block.bytes()), header.getBlockHash())) {
+                    throw new IllegalStateException("Snapshot block at height " + header.getHeight() + " does not match its header");
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    private static List<String> getTables() {
+        List<String> tables = new ArrayList<>();
+        try (Connection con = Db.db.getConnection();
+             ResultSet rs = con.getMetaData().getTables(null, "PUBLIC", null, new String[] {"TABLE"})) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME").toLowerCase(Locale.ROOT);
+                if (!SKIPPED_TABLES.contains(table)) {
+                    tables.add(table);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        Collections.sort(tables);
+        // load the block table last, it is committed only after the whole snapshot has been verified
+        tables.remove("transaction");
+        tables.remove("block");
+        tables.add("transaction");
+        tables.add("block");
+        return tables;
+    }
+
+    private Snapshot() {}
+
+}
@@ -17,6 +17,7 @@
 package nxt;
 
 import nxt.db.DbClause;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.DbUtils;
@@ -64,6 +65,11 @@ public class TaggedData {
             return " ORDER BY block_timestamp DESC, height DESC, db_id DESC ";
         }
 
+        @Override
+        protected String[] cursorColumns() {
+            return new String[] {"block_timestamp", "height", "db_id"};
+        }
+
         @Override
         protected void prune() {
             if (Constants.ENABLE_PRUNING) {
@@ -316,6 +322,10 @@ public class TaggedData {
         return taggedDataTable.getAll(from, to);
     }
 
+    public static DbIterator<TaggedData> getAll(DbCursor cursor, int from, int to) {
+        return taggedDataTable.getAll(cursor, from, to);
+    }
+
     public static TaggedData getData(long transactionId) {
         return taggedDataTable.get(taggedDataKeyFactory.newKey(transactionId));
     }
@@ -57,6 +57,8 @@ public interface TransactionProcessor extends Observable<List<? extends Transact
 
     void broadcast(Transaction transaction) throws NxtException.ValidationException;
 
+    void broadcast(List<? extends Transaction> transactions) throws NxtException.ValidationException;
+
     void processPeerTransactions(JSONObject request) throws NxtException.ValidationException;
 
     void processLater(Collection<? extends Transaction> transactions);
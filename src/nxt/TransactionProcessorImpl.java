@@ -397,40 +397,54 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 
     @Override
     public void broadcast(Transaction transaction) throws NxtException.ValidationException {
+        broadcast(Collections.singletonList(transaction));
+    }
+
+    @Override
+    public void broadcast(List<? extends Transaction> transactions) throws NxtException.ValidationException {
         BlockchainImpl.getInstance().writeLock();
         try {
-            if (TransactionDb.hasTransaction(transaction.getId())) {
-                Logger.logMessage("Transaction " + transaction.getStringId() + " already in blockchain, will not broadcast again");
-                return;
-            }
-            if (getUnconfirmedTransaction(((TransactionImpl)transaction).getDbKey()) != null) {
-                if (enableTransactionRebroadcasting) {
-                    broadcastedTransactions.add((TransactionImpl) transaction);
-                    Logger.logMessage("Transaction " + transaction.getStringId() + " already in unconfirmed pool, will re-broadcast");
-                } else {
-                    Logger.logMessage("Transaction " + transaction.getStringId() + " already in unconfirmed pool, will not broadcast again");
+            List<UnconfirmedTransaction> unconfirmedTransactions = new ArrayList<>(transactions.size());
+            List<Transaction> acceptedTransactions = new ArrayList<>(transactions.size());
+            long arrivalTimestamp = System.currentTimeMillis();
+            for (Transaction transaction : transactions) {
+                if (TransactionDb.hasTransaction(transaction.getId())) {
+                    Logger.logMessage("Transaction " + transaction.getStringId() + " already in blockchain, will not broadcast again");
+                    continue;
                 }
+                if (getUnconfirmedTransaction(((TransactionImpl)transaction).getDbKey()) != null) {
+                    if (enableTransactionRebroadcasting) {
+                        broadcastedTransactions.add((TransactionImpl) transaction);
+                        Logger.logMessage("Transaction " + transaction.getStringId() + " already in unconfirmed pool, will re-broadcast");
+                    } else {
+                        Logger.logMessage("Transaction " + transaction.getStringId() + " already in unconfirmed pool, will not broadcast again");
+                    }
+                    continue;
+                }
+                transaction.validate();
+                unconfirmedTransactions.add(new UnconfirmedTransaction((TransactionImpl) transaction, arrivalTimestamp));
+                acceptedTransactions.add(transaction);
+            }
+            if (unconfirmedTransactions.isEmpty()) {
                 return;
             }
-            transaction.validate();
-            UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction((TransactionImpl) transaction, System.currentTimeMillis());
             boolean broadcastLater = BlockchainProcessorImpl.getInstance().isProcessingBlock();
             if (broadcastLater) {
-                waitingTransactions.add(unconfirmedTransaction);
-                broadcastedTransactions.add((TransactionImpl) transaction);
-                Logger.logDebugMessage("Will broadcast new transaction later " + transaction.getStringId());
+                for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
+                    waitingTransactions.add(unconfirmedTransaction);
+                    broadcastedTransactions.add(unconfirmedTransaction.getTransaction());
+                }
+                Logger.logDebugMessage("Will broadcast " + unconfirmedTransactions.size() + " new transactions later");
             } else {
-                processTransaction(unconfirmedTransaction);
-                Logger.logDebugMessage("Accepted new transaction " + transaction.getStringId());
-                List<Transaction> acceptedTransactions = Collections.singletonList(transaction);
+                processTransactions(unconfirmedTransactions);
+                Logger.logDebugMessage("Accepted " + unconfirmedTransactions.size() + " new transactions");
                 Peers.sendToSomePeers(acceptedTransactions);
                 transactionListeners.notify(acceptedTransactions, Event.ADDED_UNCONFIRMED_TRANSACTIONS);
                 if (enableTransactionRebroadcasting) {
-                    broadcastedTransactions.add((TransactionImpl) transaction);
+                    unconfirmedTransactions.forEach(unconfirmedTransaction -> broadcastedTransactions.add(unconfirmedTransaction.getTransaction()));
                 }
             }
-
-        }finally {
+        } finally {
             BlockchainImpl.getInstance().writeUnlock();
         }
     }
@@ -659,19 +673,31 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
     }
 
     private void processTransaction(UnconfirmedTransaction unconfirmedTransaction) throws NxtException.ValidationException {
-        TransactionImpl transaction = unconfirmedTransaction.getTransaction();
+        processTransactions(Collections.singletonList(unconfirmedTransaction));
+    }
+
+    /**
+     * Add the transactions to the unconfirmed pool within a single database transaction, either all of them are
+     * accepted or none of them is
+     */
+    private void processTransactions(List<UnconfirmedTransaction> unconfirmedTransactions) throws NxtException.ValidationException {
         int curTime = Nxt.getEpochTime();
-        if ( (!(unconfirmedTransaction.getType().getType() == TYPE_PAYMENT && unconfirmedTransaction.getType().getSubtype() == SUBTYPE_PAYMENT_REDEEM) && transaction.getTimestamp() > curTime + Constants.MAX_TIMEDRIFT) || transaction.getExpiration(true) < curTime) {
-            throw new NxtException.NotCurrentlyValidException("Invalid transaction timestamp");
-        }
-        if (transaction.getVersion() < 1) {
-            throw new NxtException.NotValidException("Invalid transaction version");
-        }
-        if (transaction.getId() == 0L) {
-            throw new NxtException.NotValidException("Invalid transaction id 0");
+        for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
+            TransactionImpl transaction = unconfirmedTransaction.getTransaction();
+            if ( (!(unconfirmedTransaction.getType().getType() == TYPE_PAYMENT && unconfirmedTransaction.getType().getSubtype() == SUBTYPE_PAYMENT_REDEEM) && transaction.getTimestamp() > curTime + Constants.MAX_TIMEDRIFT) || transaction.getExpiration(true) < curTime) {
+                throw new NxtException.NotCurrentlyValidException("Invalid transaction timestamp");
+            }
+            if (transaction.getVersion() < 1) {
+                throw new NxtException.NotValidException("Invalid transaction version");
+            }
+            if (transaction.getId() == 0L) {
+                throw new NxtException.NotValidException("Invalid transaction id 0");
+            }
         }
 
         BlockchainImpl.getInstance().writeLock();
+        List<UnconfirmedTransaction> inserted = new ArrayList<>(unconfirmedTransactions.size());
+        boolean duplicatesChanged = false;
         try {
             try {
                 Db.db.beginTransaction();
@@ -679,31 +705,42 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
                     throw new NxtException.NotCurrentlyValidException("Blockchain not ready to accept transactions");
                 }
 
-                if (getUnconfirmedTransaction(transaction.getDbKey()) != null || TransactionDb.hasTransaction(transaction.getId())) {
-                    throw new NxtException.ExistingTransactionException("Transaction already processed");
-                }
+                for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
+                    TransactionImpl transaction = unconfirmedTransaction.getTransaction();
 
-                if (! transaction.verifySignature()) {
-                    if (Account.getAccount(transaction.getSenderId()) != null) {
-                        throw new NxtException.NotValidException("Transaction signature verification failed");
-                    } else {
-                        throw new NxtException.NotCurrentlyValidException("Unknown transaction sender");
+                    if (getUnconfirmedTransaction(transaction.getDbKey()) != null || TransactionDb.hasTransaction(transaction.getId())) {
+                        throw new NxtException.ExistingTransactionException("Transaction already processed");
                     }
-                }
 
-                if (! transaction.applyUnconfirmed()) {
-                    throw new NxtException.InsufficientBalanceException("Insufficient balance");
-                }
+                    if (! transaction.verifySignature()) {
+                        if (Account.getAccount(transaction.getSenderId()) != null) {
+                            throw new NxtException.NotValidException("Transaction signature verification failed");
+                        } else {
+                            throw new NxtException.NotCurrentlyValidException("Unknown transaction sender");
+                        }
+                    }
 
-                if (transaction.isUnconfirmedDuplicate(unconfirmedDuplicates)) {
-                    throw new NxtException.NotCurrentlyValidException("Duplicate unconfirmed transaction");
-                }
+                    if (! transaction.applyUnconfirmed()) {
+                        throw new NxtException.InsufficientBalanceException("Insufficient balance");
+                    }
+
+                    if (transaction.isUnconfirmedDuplicate(unconfirmedDuplicates)) {
+                        throw new NxtException.NotCurrentlyValidException("Duplicate unconfirmed transaction");
+                    }
+                    duplicatesChanged = true;
 
-                unconfirmedTransactionTable.insert(unconfirmedTransaction);
+                    unconfirmedTransactionTable.insert(unconfirmedTransaction);
+                    inserted.add(unconfirmedTransaction);
+                }
 
                 Db.db.commitTransaction();
             } catch (Exception e) {
                 Db.db.rollbackTransaction();
+                // the database rollback doesn't undo the in-memory state of the transactions accepted before the failure
+                inserted.forEach(unconfirmedTransaction -> transactionCache.remove(unconfirmedTransaction.getDbKey()));
+                if (duplicatesChanged) {
+                    rebuildUnconfirmedDuplicates();
+                }
                 throw e;
             } finally {
                 Db.db.endTransaction();
@@ -713,6 +750,15 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
         }
     }
 
+    private void rebuildUnconfirmedDuplicates() {
+        unconfirmedDuplicates.clear();
+        try (DbIterator<UnconfirmedTransaction> unconfirmedTransactions = getAllUnconfirmedTransactions()) {
+            for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
+                unconfirmedTransaction.getTransaction().isUnconfirmedDuplicate(unconfirmedDuplicates);
+            }
+        }
+    }
+
     private static final Comparator<UnconfirmedTransaction> cachedUnconfirmedTransactionComparator = (UnconfirmedTransaction t1, UnconfirmedTransaction t2) -> {
         int compare;
         // Sort by transaction_height ASC
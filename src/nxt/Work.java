@@ -1,5 +1,4 @@
 package nxt;
-import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -484,14 +483,8 @@ public final class Work {
         response.put("verification_idx", work.verification_idx);
 
 
-        BigInteger myTarget = ComputationConstants.MAXIMAL_WORK_TARGET;
-        myTarget = myTarget.divide(BigInteger.valueOf(Long.MAX_VALUE/100)); // Note, our target in compact form is in range 1..LONG_MAX/100
-        myTarget = myTarget.multiply(BigInteger.valueOf(Nxt.getBlockchain().getLastBlock().getPowTarget()));
-        if(myTarget.compareTo(ComputationConstants.MAXIMAL_WORK_TARGET) == 1)
-            myTarget = ComputationConstants.MAXIMAL_WORK_TARGET;
-        if(myTarget.compareTo(BigInteger.ONE) == 2)
-            myTarget = BigInteger.ONE;
-        response.put("target", String.format("%032x", myTarget));
+        int[] target = Nxt.getBlockchain().getLastBlock().getWorkTarget();
+        response.put("target", String.format("%08x%08x%08x%08x", target[0], target[1], target[2], target[3]));
 
 
         return response;
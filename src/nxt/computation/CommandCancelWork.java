@@ -39,6 +39,10 @@ public class CommandCancelWork extends IComputationAttachment {
     }
 
     CommandCancelWork(ByteBuffer buffer) {
+        this(new CompositeBufferReader(buffer));
+    }
+
+    CommandCancelWork(CompositeBufferReader buffer) {
         super(buffer);
         byte compressed_or_not = 0; // assume false
         try {
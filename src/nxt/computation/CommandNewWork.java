@@ -109,6 +109,10 @@ public class CommandNewWork extends IComputationAttachment {
     }
 
     CommandNewWork(ByteBuffer buffer) {
+        this(new CompositeBufferReader(buffer));
+    }
+
+    CommandNewWork(CompositeBufferReader buffer) {
         super(buffer);
         byte compressed_or_not = 0; // assume false
         try {
@@ -261,6 +265,13 @@ public class CommandNewWork extends IComputationAttachment {
         return true;
     }
 
+    @Override
+    void prepare() {
+        // the code checks only depend on the source code itself
+        if(!validated)
+            validate(null);
+    }
+
     @Override
     void apply(Transaction transaction) {
         if ((this.sourceCode == null) || (this.sourceCode.length == 0)) return;
@@ -10,7 +10,6 @@ import nxt.util.Logger;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.util.Arrays;
@@ -57,6 +56,10 @@ public class CommandPowBty extends IComputationAttachment {
     }
 
     CommandPowBty(ByteBuffer buffer) {
+        this(new CompositeBufferReader(buffer));
+    }
+
+    CommandPowBty(CompositeBufferReader buffer) {
         super(buffer);
         try {
 
@@ -275,25 +278,8 @@ public class CommandPowBty extends IComputationAttachment {
             return false;
         }
 
-        long lastBlocksTarget = transaction.getBlock().getPreviousBlockPowTarget();
-        if(lastBlocksTarget==0){
-            lastBlocksTarget = 1;
-            Logger.logErrorMessage("Fatal error came up: previous block target seems to be 0! Block ID of parent " +
-                    "block: " + transaction.getBlock().getStringId());
-        }else{
-
-        }
-
-        BigInteger myTarget = ComputationConstants.MAXIMAL_WORK_TARGET;
-        myTarget = myTarget.divide(BigInteger.valueOf(Long.MAX_VALUE/100)); // Note, our target in compact form is in range 1..LONG_MAX/100
-        myTarget = myTarget.multiply(BigInteger.valueOf(lastBlocksTarget));
-        if(myTarget.compareTo(ComputationConstants.MAXIMAL_WORK_TARGET) == 1)
-            myTarget = ComputationConstants.MAXIMAL_WORK_TARGET;
-        if(myTarget.compareTo(BigInteger.ONE) == 2)
-            myTarget = BigInteger.ONE;
-        int[] target = Convert.bigintToInts(myTarget,4);
-        // safeguard
-        if(target.length!=4) target = new int[]{0,0,0,0};
+        // derived once per block, do not modify
+        int[] target = transaction.getBlock().getPreviousBlockWorkTarget();
 
         // TODO, RECREATE FALSE STATE WHICH CONTAINS INT NUMBERS !!!!!!!!!!!!!!!!!!!!!!!!!
         Primitives.STATE state = new Primitives.STATE();
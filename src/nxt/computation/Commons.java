@@ -1,5 +1,9 @@
 package nxt.computation;
 
+import nxt.util.Convert;
+
+import java.math.BigInteger;
+
 /******************************************************************************
  * Copyright © 2017 The XEL Core Developers.                                  *
  *                                                                            *
@@ -17,6 +21,25 @@ package nxt.computation;
  ******************************************************************************/
 
 public class Commons {
+
+    /**
+     * Expand the compact pow target of a block (range 1..LONG_MAX/100) into the 4-int work target the pow hashes
+     * are compared against, most significant int first
+     */
+    public static int[] getWorkTarget(long compactTarget) {
+        BigInteger myTarget = ComputationConstants.MAXIMAL_WORK_TARGET;
+        myTarget = myTarget.divide(BigInteger.valueOf(Long.MAX_VALUE/100));
+        myTarget = myTarget.multiply(BigInteger.valueOf(compactTarget));
+        if(myTarget.compareTo(ComputationConstants.MAXIMAL_WORK_TARGET) > 0)
+            myTarget = ComputationConstants.MAXIMAL_WORK_TARGET;
+        if(myTarget.compareTo(ComputationConstants.MINIMAL_WORK_TARGET) < 0)
+            myTarget = ComputationConstants.MINIMAL_WORK_TARGET;
+        int[] target = Convert.bigintToInts(myTarget,4);
+        // safeguard
+        if(target.length!=4) target = new int[]{0,0,0,0};
+        return target;
+    }
+
     public static boolean checkRange(int lower, int higher, int value){
         if (value >= lower && value <= higher) return true;
         return false;
@@ -0,0 +1,121 @@
+package nxt.computation;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+/*
+ Reads a work package which is split up into multiple message chunks as if it was one big-endian ByteBuffer. The chunks
+ are not copied into a combined array, reads simply continue in the next chunk once the current one is exhausted.
+ Reading past the end throws a BufferUnderflowException just like ByteBuffer does.
+ */
+final class CompositeBufferReader {
+
+    private final ByteBuffer[] chunks;
+    private int current = 0;
+    private int remaining = 0;
+
+    CompositeBufferReader(ByteBuffer... chunks) {
+        this.chunks = chunks;
+        for (ByteBuffer chunk : chunks) {
+            remaining += chunk.remaining();
+        }
+        skipExhausted();
+    }
+
+    static CompositeBufferReader fromChunks(byte[][] chunks, int skip) {
+        ByteBuffer[] buffers = new ByteBuffer[chunks.length];
+        for (int i = 0; i < chunks.length; ++i) {
+            if (chunks[i].length < skip) throw new IllegalArgumentException("Chunk " + i + " is shorter than its header");
+            buffers[i] = ByteBuffer.wrap(chunks[i], skip, chunks[i].length - skip).slice();
+        }
+        return new CompositeBufferReader(buffers);
+    }
+
+    int remaining() {
+        return remaining;
+    }
+
+    boolean hasRemaining() {
+        return remaining > 0;
+    }
+
+    byte get() {
+        if (remaining < 1) throw new BufferUnderflowException();
+        byte b = chunks[current].get();
+        --remaining;
+        skipExhausted();
+        return b;
+    }
+
+    short getShort() {
+        if (remaining < 2) throw new BufferUnderflowException();
+        ByteBuffer chunk = chunks[current];
+        if (chunk.remaining() >= 2) {
+            short s = chunk.getShort();
+            remaining -= 2;
+            skipExhausted();
+            return s;
+        }
+        return (short) ((get() & 0xff) << 8 | (get() & 0xff));
+    }
+
+    int getInt() {
+        if (remaining < 4) throw new BufferUnderflowException();
+        ByteBuffer chunk = chunks[current];
+        if (chunk.remaining() >= 4) {
+            int i = chunk.getInt();
+            remaining -= 4;
+            skipExhausted();
+            return i;
+        }
+        return (getShort() & 0xffff) << 16 | (getShort() & 0xffff);
+    }
+
+    long getLong() {
+        if (remaining < 8) throw new BufferUnderflowException();
+        ByteBuffer chunk = chunks[current];
+        if (chunk.remaining() >= 8) {
+            long l = chunk.getLong();
+            remaining -= 8;
+            skipExhausted();
+            return l;
+        }
+        return (getInt() & 0xffffffffL) << 32 | (getInt() & 0xffffffffL);
+    }
+
+    CompositeBufferReader get(byte[] dst) {
+        if (remaining < dst.length) throw new BufferUnderflowException();
+        int pos = 0;
+        while (pos < dst.length) {
+            ByteBuffer chunk = chunks[current];
+            int length = Math.min(chunk.remaining(), dst.length - pos);
+            chunk.get(dst, pos, length);
+            pos += length;
+            remaining -= length;
+            skipExhausted();
+        }
+        return this;
+    }
+
+    private void skipExhausted() {
+        while (current < chunks.length - 1 && !chunks[current].hasRemaining()) {
+            ++current;
+        }
+    }
+}
@@ -41,6 +41,10 @@ public class ComputationConstants {
     public static final int MAX_UNCOMPRESSED_WORK_SIZE = 6*1024*1024; // 6 MB is the maximum for now
     public static final short WORK_TRANSACTION_DEADLINE_VALUE = 48;
     public static final int START_ENCODING_BLOCK = 1;
+    // work messages chained over several transactions are decoded from this height on, before it their reassembly
+    // always failed and they were ignored, see MessageEncoder.decodeAttachment. Not scheduled yet on either network,
+    // set it to an announced height above the current chain before enabling it
+    public static final int MULTI_CHUNK_WORK_BLOCK = Constants.isTestnet ? Integer.MAX_VALUE : Integer.MAX_VALUE;
     public static final int BOUNTY_STORAGE_INTS = 32;
     public static final short MULTIPLIER_LENGTH = 32;
     public static final int POW_MIN = 10;
@@ -28,6 +28,9 @@ public abstract class IComputationAttachment  {
     IComputationAttachment(ByteBuffer buffer) {
     }
 
+    IComputationAttachment(CompositeBufferReader buffer) {
+    }
+
     IComputationAttachment() {
     }
 
@@ -51,6 +54,10 @@ public abstract class IComputationAttachment  {
 
     abstract void putMyBytes(ByteBuffer buffer);
 
+    // runs the checks which do not depend on the blockchain state ahead of apply, may be called concurrently for different attachments
+    void prepare() {
+    }
+
     abstract boolean validate(Transaction transaction) throws NxtException.ValidationException;
     abstract void apply(Transaction transaction);
 
@@ -1,21 +1,36 @@
 package nxt.computation;
 
 import nxt.*;
+import nxt.db.DbIterator;
+import nxt.db.DbUtils;
 import nxt.http.ParameterException;
 import nxt.http.ParameterParser;
 import nxt.peer.Peers;
+import nxt.util.Convert;
 import nxt.util.Logger;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /******************************************************************************
  * Copyright © 2017 The XEL Core Developers.                                  *
@@ -45,35 +60,162 @@ public class MessageEncoder {
 
     static boolean useComputationEngine = Nxt.getBooleanProperty("nxt.enableComputationEngine");
 
+    /*
+    decoded attachments are cached per (final) transaction id, so that a work message which was already reassembled and
+    parsed while sitting in the unconfirmed pool does not have to be reassembled and parsed again on block apply.
+    The cache is bounded by the accumulated size of the cached work packages and evicts least recently used entries first */
+    private static final long maxCachedAttachmentBytes = Math.max(Nxt.getIntProperty("nxt.computationAttachmentCacheKB", 16 * 1024), 0) * 1024L;
+    private static final Map<Long, IComputationAttachment> attachmentCache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedAttachmentBytes = 0;
+
+    /*
+    unconfirmed work messages are decoded on a single background thread rather than in the transaction processor
+    listener, batches which do not fit in the queue are dropped and decoded on block apply instead */
+    private static final ThreadPoolExecutor predecodeService = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(16), runnable -> {
+                Thread thread = new Thread(runnable, "Work message predecode");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    /*
+    on startup, blocks which have not been "work parsed" yet are caught up in batches: the attachments of a batch are
+    decoded (and the code of new works is checked) in parallel, while the previous batch is applied in height order */
+    private static final int CATCH_UP_BATCH_SIZE = 500;
+    private static final int BLOCK_CACHE_DEPTH = 10; // see BlockDb.BLOCK_CACHE_SIZE
+    private static volatile boolean caughtUp = false;
+
+    private static final class DecodedBlock {
+        private final Block block;
+        private final List<Transaction> transactions = new ArrayList<>();
+        private final List<IComputationAttachment> attachments = new ArrayList<>();
+
+        private DecodedBlock(Block block) {
+            this.block = block;
+        }
+    }
+
     static void processBlockInternal(Block block){
-        // Check all TX for relevant stuff
+        applyDecodedBlock(decodeBlock(block));
+    }
 
-        int powCounter = 0;
+    private static DecodedBlock decodeBlock(Block block){
+        // Check all TX for relevant stuff
+        DecodedBlock decoded = new DecodedBlock(block);
 
         for(Transaction t : block.getTransactions()){
             Appendix.PrunablePlainMessage m = t.getPrunablePlainMessage();
             if(m==null) continue;
             if(MessageEncoder.checkMessageForPiggyback(m, true, false)){
                 try {
-                    Appendix.PrunablePlainMessage[] reconstructedChain = MessageEncoder.extractMessages(t);
-
-                    // Allow the decoding of the attachment
-                    IComputationAttachment att = MessageEncoder.decodeAttachment(reconstructedChain);
+                    // Take the pre-decoded attachment if the transaction has been seen unconfirmed before, the cached
+                    // instance is handed out only once as attachments keep their validation state internally
+                    IComputationAttachment att = removeCachedAttachment(t.getId());
+                    if(att == null) {
+                        Appendix.PrunablePlainMessage[] reconstructedChain = MessageEncoder.extractMessages(t);
+
+                        // Allow the decoding of the attachment
+                        att = MessageEncoder.decodeAttachment(reconstructedChain, block.getHeight());
+                    }
                     if(att == null) continue;
-                    att.apply(t);
-
-                    if(t.wasAPow())
-                        powCounter++;
-
+                    decoded.transactions.add(t);
+                    decoded.attachments.add(att);
                 } catch (Exception e) {
                     // generous catch, do not allow anything to cripple the blockchain integrity
                     continue;
                 }
             }
         }
-        block.calculatePowTarget(powCounter);
-        block.setLocallyProcessed();
+        return decoded;
+    }
+
+    private static void applyDecodedBlock(DecodedBlock decoded){
+        int powCounter = 0;
+
+        for(int i=0; i<decoded.attachments.size(); ++i){
+            Transaction t = decoded.transactions.get(i);
+            try {
+                decoded.attachments.get(i).apply(t);
+
+                if(t.wasAPow())
+                    powCounter++;
+
+            } catch (Exception e) {
+                // generous catch, do not allow anything to cripple the blockchain integrity
+                continue;
+            }
+        }
+        decoded.block.calculatePowTarget(powCounter);
+        decoded.block.setLocallyProcessed();
+    }
+
+    static void predecodeUnconfirmed(List<? extends Transaction> transactions){
+        if(maxCachedAttachmentBytes == 0) return;
+        for(Transaction t : transactions){
+            Appendix.PrunablePlainMessage m = t.getPrunablePlainMessage();
+            if(m==null || !MessageEncoder.checkMessageForPiggyback(m, true, false)) continue;
+            synchronized (attachmentCache) {
+                if (attachmentCache.containsKey(t.getId())) continue;
+            }
+            // the transaction may have been confirmed or removed while the batch was queued
+            if(Nxt.getTransactionProcessor().getUnconfirmedTransaction(t.getId()) == null) continue;
+            try {
+                IComputationAttachment att = MessageEncoder.decodeAttachment(MessageEncoder.extractMessages(t, true),
+                        Nxt.getBlockchain().getHeight() + 1);
+                if(att != null)
+                    cacheAttachment(t.getId(), att);
+            } catch (Exception e) {
+                // the chain may not be complete yet, it will be decoded on block apply then
+            }
+        }
+    }
+
+    private static void cacheAttachment(long transactionId, IComputationAttachment att){
+        int size = att.getSize();
+        if(size > maxCachedAttachmentBytes) return;
+        synchronized (attachmentCache) {
+            IComputationAttachment previous = attachmentCache.put(transactionId, att);
+            if(previous != null)
+                cachedAttachmentBytes -= previous.getSize();
+            cachedAttachmentBytes += size;
+            Iterator<IComputationAttachment> iterator = attachmentCache.values().iterator();
+            while(cachedAttachmentBytes > maxCachedAttachmentBytes && iterator.hasNext()){
+                cachedAttachmentBytes -= iterator.next().getSize();
+                iterator.remove();
+            }
+        }
+    }
 
+    private static IComputationAttachment removeCachedAttachment(long transactionId){
+        synchronized (attachmentCache) {
+            IComputationAttachment att = attachmentCache.remove(transactionId);
+            if(att != null)
+                cachedAttachmentBytes -= att.getSize();
+            return att;
+        }
+    }
+
+    private static void evictRemovedAttachments(List<? extends Transaction> transactions){
+        synchronized (attachmentCache) {
+            if (attachmentCache.isEmpty()) return;
+        }
+        // all unconfirmed transactions are requeued to the waiting pool before a block is applied, only those which
+        // are not waiting to be re-added are really gone
+        Set<Long> waiting = new HashSet<>();
+        for(Transaction t : Nxt.getTransactionProcessor().getAllWaitingTransactions()){
+            waiting.add(t.getId());
+        }
+        for(Transaction t : transactions){
+            if(!waiting.contains(t.getId()))
+                removeCachedAttachment(t.getId());
+        }
+    }
+
+    private static void clearAttachmentCache(){
+        synchronized (attachmentCache) {
+            attachmentCache.clear();
+            cachedAttachmentBytes = 0;
+        }
     }
 
     static {
@@ -81,45 +223,146 @@ public class MessageEncoder {
             if (block.getHeight() < ComputationConstants.START_ENCODING_BLOCK || !useComputationEngine) {
                 return;
             }
+            // blocks pushed before init() has caught up are applied by the catch up, in height order
+            if (!caughtUp) {
+                return;
+            }
             processBlockInternal(block);
         }, BlockchainProcessor.Event.AFTER_BLOCK_APPLY);
+        Nxt.getBlockchainProcessor().addListener(block -> clearAttachmentCache(), BlockchainProcessor.Event.BLOCK_POPPED);
+        Nxt.getBlockchainProcessor().addListener(block -> clearAttachmentCache(), BlockchainProcessor.Event.RESCAN_BEGIN);
+        Nxt.getTransactionProcessor().addListener(transactions -> {
+            if (useComputationEngine && maxCachedAttachmentBytes > 0) {
+                predecodeService.execute(() -> predecodeUnconfirmed(transactions));
+            }
+        }, TransactionProcessor.Event.ADDED_UNCONFIRMED_TRANSACTIONS);
+        Nxt.getTransactionProcessor().addListener(MessageEncoder::evictRemovedAttachments,
+                TransactionProcessor.Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
     }
 
     public static void init(){
+        if(!useComputationEngine) return;
+
         // Here, we need to catch up if there are blocks remaining which have not been "work parsed" and the computation engine is started/active
-        int current_height = Nxt.getBlockchain().getHeight();
-        int last_processed_height = Nxt.getBlockchain().getLastLocallyProcessedHeight();
+        int from = Nxt.getBlockchain().getLastLocallyProcessedHeight() + 1;
+        int startHeight = Nxt.getBlockchain().getHeight();
+        if(from <= startHeight)
+            Logger.logInfoMessage("Catching up work related information from past blocks " + from + " to " + startHeight);
+
+        ExecutorService decoder = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), 1));
+        try {
+            List<Future<DecodedBlock>> batch = decodeBatch(decoder, from);
+            while(true){
+                if(batch.isEmpty()){
+                    // new blocks are not pushed while we hold the update lock, so from here on the block apply
+                    // listener takes over, until then it skips the blocks and the next batch picks them up
+                    Nxt.getBlockchain().updateLock();
+                    try {
+                        if(from > Nxt.getBlockchain().getHeight()){
+                            caughtUp = true;
+                            return;
+                        }
+                    } finally {
+                        Nxt.getBlockchain().updateUnlock();
+                    }
+                    batch = decodeBatch(decoder, from);
+                    continue;
+                }
 
-        if(last_processed_height == current_height) return; // no need to do anything
-        if(last_processed_height > current_height) return; // this should never happen anyways, jetz keep it in here to avoid any chance of an infinite loop
+                // decode the following batch while this one is applied
+                List<Future<DecodedBlock>> prefetched = decodeBatch(decoder, from + batch.size());
+                int applied;
+                Nxt.getBlockchain().updateLock();
+                try {
+                    applied = applyBatch(batch);
+                } finally {
+                    Nxt.getBlockchain().updateUnlock();
+                }
+                from += applied;
+                if(applied < batch.size()){
+                    // blocks have been popped off in the meantime, the prefetched ones may be gone as well
+                    prefetched.forEach(future -> future.cancel(true));
+                    batch = decodeBatch(decoder, from);
+                }else{
+                    batch = prefetched;
+                }
+                int height = Math.max(Nxt.getBlockchain().getHeight(), 1);
+                Logger.logInfoMessage("Catching up work related information from past blocks - block " + (from - 1) + " of " + height
+                        + " (" + (100L * (from - 1) / height) + "%)");
+            }
+        } finally {
+            decoder.shutdownNow();
+        }
+    }
 
-        // Catch up!
-        for(int i=last_processed_height + 1; i<=last_processed_height; ++i){
+    private static List<Future<DecodedBlock>> decodeBatch(ExecutorService decoder, int from){
+        int height = Nxt.getBlockchain().getHeight();
+        int to = Math.min(from + CATCH_UP_BATCH_SIZE - 1, height);
+        if(from > to) return Collections.emptyList();
 
-            Block block = Nxt.getBlockchain().getBlockAtHeight(i);
-            if(block==null){
-                // This is bad!
-                throw new RuntimeException("Could not retrieve Block from BlockDB (height: " + i);
+        List<Block> blocks = new ArrayList<>(to - from + 1);
+        Connection con = null;
+        try {
+            con = Db.db.getConnection();
+            PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE height >= ? AND height <= ? ORDER BY height ASC");
+            pstmt.setInt(1, from);
+            pstmt.setInt(2, to);
+            try (DbIterator<? extends Block> iterator = Nxt.getBlockchain().getBlocks(con, pstmt)) {
+                for (Block block : iterator) {
+                    // recent blocks are cached, update the cached instances rather than fresh copies of them
+                    blocks.add(block.getHeight() > height - BLOCK_CACHE_DEPTH ? Nxt.getBlockchain().getBlockAtHeight(block.getHeight()) : block);
+                }
             }
-            processBlockInternal(block);
-            Logger.logInfoMessage("Catching up work related information from past blocks - block " + i + " of " + last_processed_height);
+        } catch (SQLException e) {
+            DbUtils.close(con);
+            throw new RuntimeException(e.toString(), e);
+        }
+
+        List<Future<DecodedBlock>> batch = new ArrayList<>(blocks.size());
+        for(Block block : blocks){
+            batch.add(decoder.submit(() -> {
+                DecodedBlock decoded = decodeBlock(block);
+                decoded.attachments.forEach(IComputationAttachment::prepare);
+                return decoded;
+            }));
+        }
+        return batch;
+    }
+
+    private static int applyBatch(List<Future<DecodedBlock>> batch){
+        int applied = 0;
+        Db.db.beginTransaction();
+        try {
+            for(Future<DecodedBlock> future : batch){
+                DecodedBlock decoded = future.get();
+                int height = decoded.block.getHeight();
+                if(height > Nxt.getBlockchain().getHeight() || Nxt.getBlockchain().getBlockIdAtHeight(height) != decoded.block.getId())
+                    break;
+                applyDecodedBlock(decoded);
+                applied++;
+            }
+            Db.db.commitTransaction();
+        } catch (Exception e) {
+            Db.db.rollbackTransaction();
+            throw new RuntimeException(e.toString(), e);
+        } finally {
+            Db.db.endTransaction();
         }
+        return applied;
     }
 
 
     public static long push(IComputationAttachment work, String secretPhrase) throws NxtException, IOException {
         Appendix.PrunablePlainMessage[] messages = MessageEncoder.encodeAttachment(work);
         JSONStreamAware[] individual_txs = MessageEncoder.encodeTransactions(messages, secretPhrase);
-        StringWriter sw = new StringWriter();
-        PrintWriter pw = new PrintWriter(sw);
-        for(int i=0;i<individual_txs.length;++i){
-            individual_txs[i].writeJSONString(pw);
-        }
-        StringBuffer sb = sw.getBuffer();
         return MessageEncoder.pushThemAll(individual_txs);
     }
 
     public static Appendix.PrunablePlainMessage[] extractMessages(Transaction _t) throws NxtException.ValidationException {
+        return extractMessages(_t, false);
+    }
+
+    static Appendix.PrunablePlainMessage[] extractMessages(Transaction _t, boolean includeUnconfirmed) throws NxtException.ValidationException {
 
         Transaction t = _t;
 
@@ -139,7 +382,14 @@ public class MessageEncoder {
 
         // now, that we have the original transaction we have to fetch (possible) referenced transactions
         while(t.getReferencedTransactionFullHash() != null){
-            t = Nxt.getBlockchain().getTransactionByFullHash(t.getReferencedTransactionFullHash());
+            String referencedFullHash = t.getReferencedTransactionFullHash();
+            t = Nxt.getBlockchain().getTransactionByFullHash(referencedFullHash);
+            if(t == null && includeUnconfirmed) {
+                // chained chunks are usually broadcast together and still sit in the unconfirmed pool
+                t = Nxt.getTransactionProcessor().getUnconfirmedTransaction(Convert.fullHashToId(Convert.parseHexString(referencedFullHash)));
+                if(t != null && !referencedFullHash.equals(t.getFullHash()))
+                    t = null;
+            }
 
             if(t == null) throw new NxtException.NotValidException("This transaction is not a valid work-encoder");
             pm = t.getPrunablePlainMessage();
@@ -181,7 +431,6 @@ public class MessageEncoder {
 
     public static long pushThemAll(JSONStreamAware[] aw) throws NxtException.ValidationException, ParameterException {
         List<Transaction> toPush = new ArrayList<>();
-        long lastPushed = 0;
         for(int i=0;i<aw.length;++i)
         {
             Transaction.Builder builder = ParameterParser.parseTransaction(aw[i].toString(), null, null);
@@ -189,12 +438,11 @@ public class MessageEncoder {
             transaction.validate(); // safe guard, so it cannot happen that tx1 goes through and tx2 fails validation
             toPush.add(transaction);
         }
+        if(toPush.isEmpty()) return 0;
 
-        for(Transaction t : toPush){
-            Nxt.getTransactionProcessor().broadcast(t);
-            lastPushed = t.getId();
-        }
-        return lastPushed;
+        // the whole chain enters the unconfirmed pool in one go and is relayed to peers as one batch
+        Nxt.getTransactionProcessor().broadcast(toPush);
+        return toPush.get(toPush.size() - 1).getId();
     }
 
     public static Appendix.PrunablePlainMessage[] encodeAttachment(IComputationAttachment att){
@@ -226,27 +474,23 @@ public class MessageEncoder {
         }
     }
 
-    public static IComputationAttachment decodeAttachment(Appendix.PrunablePlainMessage[] m){
+    public static IComputationAttachment decodeAttachment(Appendix.PrunablePlainMessage[] m, int height){
         try {
 
-            int total_length = 0;
-            for(int i=0;i<m.length;++i) {
-                if (!MessageEncoder.checkMessageForPiggyback(m[i])) return null;
-                total_length = total_length + (m[i].getMessage().length - MessageEncoder.MAGIC.length);
-            }
-
-            byte[] work_package = new byte[total_length];
-            int last_pos = 0;
+            // the former reassembly advanced its write offset by the full message length including the magic header,
+            // so it ran past the end of the work package for every chained message and those were never applied
+            if (m.length > 1 && height < ComputationConstants.MULTI_CHUNK_WORK_BLOCK) return null;
 
+            byte[][] chunks = new byte[m.length][];
             for(int i=0;i<m.length;++i) {
-                byte[] msg = m[i].getMessage();
-                System.arraycopy(msg, MessageEncoder.MAGIC.length, work_package, last_pos, msg.length-MessageEncoder.MAGIC.length);
-                last_pos += msg.length;
+                if (!MessageEncoder.checkMessageForPiggyback(m[i])) return null;
+                chunks[i] = m[i].getMessage();
             }
 
-            if (work_package.length == 0) return null; // safe guard
+            // the chunks are read in place, skipping the magic header of each one, without reassembling them first
+            CompositeBufferReader wp_bb = CompositeBufferReader.fromChunks(chunks, MessageEncoder.MAGIC.length);
 
-            ByteBuffer wp_bb = ByteBuffer.wrap(work_package);
+            if (!wp_bb.hasRemaining()) return null; // safe guard
 
             byte messageType = wp_bb.get();
             if(messageType == CommandsEnum.CREATE_NEW_WORK.getCode()){
@@ -18,11 +18,19 @@ package nxt.db;
 
 import nxt.Nxt;
 import nxt.util.Logger;
-import org.h2.jdbcx.JdbcConnectionPool;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.db.MVTableEngine;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class BasicDb {
 
@@ -39,6 +47,13 @@ public class BasicDb {
         private int loginTimeout;
         private int defaultLockTimeout;
         private int maxMemoryRows;
+        private int statementCacheSize;
+        private String connectionPool;
+        private int maxTransactionConnections;
+        private int connectionLeakThreshold;
+        private boolean shutdownCompact = true;
+        private boolean collectStatistics;
+        private int commitQueueSize;
 
         public DbProperties maxCacheSize(int maxCacheSize) {
             this.maxCacheSize = maxCacheSize;
@@ -95,17 +110,64 @@ public class BasicDb {
             return this;
         }
 
+        public DbProperties statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        public DbProperties connectionPool(String connectionPool) {
+            this.connectionPool = connectionPool;
+            return this;
+        }
+
+        public DbProperties maxTransactionConnections(int maxTransactionConnections) {
+            this.maxTransactionConnections = maxTransactionConnections;
+            return this;
+        }
+
+        public DbProperties connectionLeakThreshold(int connectionLeakThreshold) {
+            this.connectionLeakThreshold = connectionLeakThreshold;
+            return this;
+        }
+
+        public DbProperties shutdownCompact(boolean shutdownCompact) {
+            this.shutdownCompact = shutdownCompact;
+            return this;
+        }
+
+        public DbProperties collectStatistics(boolean collectStatistics) {
+            this.collectStatistics = collectStatistics;
+            return this;
+        }
+
+        public DbProperties commitQueueSize(int commitQueueSize) {
+            this.commitQueueSize = commitQueueSize;
+            return this;
+        }
+
     }
 
-    private JdbcConnectionPool cp;
+    private static final int COMPACT_FILL_RATE = 90;
+    private static final int COMPACT_WRITE_SIZE = 16 * 1024 * 1024;
+
+    private ConnectionPool cp;
+    private ConnectionPool transactionPool;
     private volatile int maxActiveConnections;
     private final String dbUrl;
+    private final String dbFile;
     private final String dbUsername;
     private final String dbPassword;
     private final int maxConnections;
     private final int loginTimeout;
     private final int defaultLockTimeout;
     private final int maxMemoryRows;
+    protected final int statementCacheSize;
+    private final String connectionPool;
+    private final int maxTransactionConnections;
+    private final int connectionLeakThreshold;
+    private final boolean shutdownCompact;
+    protected final boolean collectStatistics;
+    protected final int commitQueueSize;
     private volatile boolean initialized = false;
 
     public BasicDb(DbProperties dbProperties) {
@@ -114,31 +176,44 @@ public class BasicDb {
             maxCacheSize = Math.min(256, Math.max(16, (Runtime.getRuntime().maxMemory() / (1024 * 1024) - 128)/2)) * 1024;
         }
         String dbUrl = dbProperties.dbUrl;
+        String dbFile = null;
         if (dbUrl == null) {
             String dbDir = Nxt.getDbDir(dbProperties.dbDir);
             dbUrl = String.format("jdbc:%s:%s;%s", dbProperties.dbType, dbDir, dbProperties.dbParams);
+            dbFile = dbDir;
         }
         if (!dbUrl.contains("MV_STORE=")) {
             dbUrl += ";MV_STORE=FALSE";
         }
-        if (!dbUrl.contains("CACHE_SIZE=")) {
+        if (!dbUrl.contains(";CACHE_SIZE=")) {
             dbUrl += ";CACHE_SIZE=" + maxCacheSize;
         }
+        if (dbProperties.statementCacheSize > 0 && !dbUrl.contains("QUERY_CACHE_SIZE=")) {
+            dbUrl += ";QUERY_CACHE_SIZE=" + dbProperties.statementCacheSize;
+        }
         this.dbUrl = dbUrl;
+        this.dbFile = dbFile;
         this.dbUsername = dbProperties.dbUsername;
         this.dbPassword = dbProperties.dbPassword;
         this.maxConnections = dbProperties.maxConnections;
         this.loginTimeout = dbProperties.loginTimeout;
         this.defaultLockTimeout = dbProperties.defaultLockTimeout;
         this.maxMemoryRows = dbProperties.maxMemoryRows;
+        this.statementCacheSize = dbProperties.statementCacheSize;
+        this.connectionPool = dbProperties.connectionPool == null ? "nxt" : dbProperties.connectionPool;
+        this.maxTransactionConnections = dbProperties.maxTransactionConnections;
+        this.connectionLeakThreshold = dbProperties.connectionLeakThreshold;
+        this.shutdownCompact = dbProperties.shutdownCompact;
+        this.collectStatistics = dbProperties.collectStatistics;
+        this.commitQueueSize = dbProperties.commitQueueSize;
     }
 
     public void init(DbVersion dbVersion) {
         Logger.logDebugMessage("Database jdbc url set to %s username %s", dbUrl, dbUsername);
+        checkStorageEngine();
         FullTextTrigger.setActive(true);
-        cp = JdbcConnectionPool.create(dbUrl, dbUsername, dbPassword);
-        cp.setMaxConnections(maxConnections);
-        cp.setLoginTimeout(loginTimeout);
+        cp = createConnectionPool("read", maxConnections);
+        transactionPool = maxTransactionConnections > 0 ? createConnectionPool("transaction", maxTransactionConnections) : cp;
         try (Connection con = cp.getConnection();
              Statement stmt = con.createStatement()) {
             stmt.executeUpdate("SET DEFAULT_LOCK_TIMEOUT " + defaultLockTimeout);
@@ -147,9 +222,35 @@ public class BasicDb {
             throw new RuntimeException(e.toString(), e);
         }
         dbVersion.init(this);
+        try (Connection con = cp.getConnection()) {
+            FullTextTrigger.recoverIndex(con);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
         initialized = true;
     }
 
+    /**
+     * H2 opens an existing PageStore database even if MV_STORE=TRUE, but creates a new empty PageStore database
+     * if only an MVStore database exists and MV_STORE=FALSE
+     */
+    private void checkStorageEngine() {
+        if (dbFile == null) {
+            return;
+        }
+        boolean mvStore = dbUrl.toUpperCase().contains(";MV_STORE=TRUE");
+        boolean mvStoreExists = new File(dbFile + ".mv.db").exists();
+        boolean pageStoreExists = new File(dbFile + ".h2.db").exists();
+        if (!mvStore && mvStoreExists && !pageStoreExists) {
+            throw new RuntimeException("Database " + dbFile + ".mv.db uses the MVStore, set MV_STORE=TRUE "
+                    + "or use the MigrateDatabase tool to convert it");
+        }
+        if (mvStore && pageStoreExists && !mvStoreExists) {
+            Logger.logWarningMessage("Database " + dbFile + ".h2.db still uses the PageStore, "
+                    + "use the MigrateDatabase tool to convert it to the MVStore");
+        }
+    }
+
     public void shutdown() {
         if (!initialized) {
             return;
@@ -158,8 +259,11 @@ public class BasicDb {
             FullTextTrigger.setActive(false);
             Connection con = cp.getConnection();
             Statement stmt = con.createStatement();
-            stmt.execute("SHUTDOWN COMPACT");
+            stmt.execute(shutdownCompact ? "SHUTDOWN COMPACT" : "SHUTDOWN");
             Logger.logShutdownMessage("Database shutdown completed");
+            for (ConnectionPool pool : getConnectionPools()) {
+                pool.dispose();
+            }
         } catch (SQLException e) {
             Logger.logShutdownMessage(e.toString(), e);
         }
@@ -174,6 +278,45 @@ public class BasicDb {
         }
     }
 
+    /**
+     * Compact the database file while the database is in use, MVStore only.  Chunks with a low fill rate are
+     * rewritten, each step writing at most COMPACT_WRITE_SIZE bytes.  Chunks are not moved towards the start of the
+     * file, as MVStore.compactMoveChunks disables the retention time which open readers rely on, that is left to
+     * the compaction at shutdown or to the CompactDatabase tool.  Space of rewritten chunks can only be reused after
+     * the MVStore retention time, so the file mostly stops growing rather than shrinks and repeated runs may free more.
+     *
+     * @param   maxTime             Time limit in milliseconds
+     * @return                      Reduction of the file size in bytes, -1 if the database does not use the MVStore
+     *                              or is accessed through a TCP server
+     */
+    public long compact(long maxTime) {
+        MVStore store;
+        try (Connection con = cp.getConnection()) {
+            SessionInterface session = con.unwrap(JdbcConnection.class).getSession();
+            if (!(session instanceof Session)) {
+                return -1;
+            }
+            MVTableEngine.Store mvStore = ((Session) session).getDatabase().getMvStore();
+            if (mvStore == null) {
+                return -1;
+            }
+            store = mvStore.getStore();
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        long startTime = System.currentTimeMillis();
+        long startSize = store.getFileStore().size();
+        boolean rewritten;
+        do {
+            rewritten = store.compact(COMPACT_FILL_RATE, COMPACT_WRITE_SIZE);
+            store.commit();
+        } while (rewritten && System.currentTimeMillis() - startTime < maxTime);
+        long size = store.getFileStore().size();
+        Logger.logDebugMessage("Database file compacted from %d to %d bytes in %d ms", startSize, size,
+                System.currentTimeMillis() - startTime);
+        return startSize - size;
+    }
+
     public Connection getConnection() throws SQLException {
         Connection con = getPooledConnection();
         con.setAutoCommit(true);
@@ -181,8 +324,16 @@ public class BasicDb {
     }
 
     protected Connection getPooledConnection() throws SQLException {
-        Connection con = cp.getConnection();
-        int activeConnections = cp.getActiveConnections();
+        return getPooledConnection(cp);
+    }
+
+    protected Connection getTransactionConnection() throws SQLException {
+        return getPooledConnection(transactionPool);
+    }
+
+    private Connection getPooledConnection(ConnectionPool pool) throws SQLException {
+        Connection con = pool.getConnection();
+        int activeConnections = cp.getActiveConnections() + (transactionPool != cp ? transactionPool.getActiveConnections() : 0);
         if (activeConnections > maxActiveConnections) {
             maxActiveConnections = activeConnections;
             Logger.logDebugMessage("Database connection pool current size: " + activeConnections);
@@ -190,6 +341,29 @@ public class BasicDb {
         return con;
     }
 
+    private ConnectionPool createConnectionPool(String name, int maxConnections) {
+        switch (connectionPool) {
+            case "nxt":
+                return new DbConnectionPool(name, dbUrl, dbUsername, dbPassword, maxConnections, loginTimeout, connectionLeakThreshold);
+            case "h2":
+                return new H2ConnectionPool(name, dbUrl, dbUsername, dbPassword, maxConnections, loginTimeout);
+            default:
+                throw new IllegalArgumentException("Unknown connection pool " + connectionPool);
+        }
+    }
+
+    public List<ConnectionPool> getConnectionPools() {
+        if (cp == null) {
+            return Collections.emptyList();
+        }
+        List<ConnectionPool> pools = new ArrayList<>();
+        pools.add(cp);
+        if (transactionPool != cp) {
+            pools.add(transactionPool);
+        }
+        return pools;
+    }
+
     public String getUrl() {
         return dbUrl;
     }
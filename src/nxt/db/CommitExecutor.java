@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import nxt.util.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the asynchronous phase of the transaction commit callbacks on a single thread, in the order the
+ * transactions were committed.  The queue is bounded: a committing thread blocks while it is full, so slow
+ * subscribers eventually slow down block processing instead of running out of memory.  With a capacity of 0
+ * the tasks are run on the committing thread.
+ */
+public final class CommitExecutor {
+
+    private final int capacity;
+    private final BlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+    private volatile Thread thread;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder blockedTime = new LongAdder();
+    private final LongAccumulator maxSize = new LongAccumulator(Math::max, 0);
+
+    CommitExecutor(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+        if (this.capacity == 0) {
+            queue = null;
+            executor = null;
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(this.capacity);
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue,
+                runnable -> {
+                    Thread t = new Thread(runnable, "CommitCallbacks");
+                    t.setDaemon(true);
+                    thread = t;
+                    return t;
+                },
+                (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        runnable.run();
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    blocked.increment();
+                    try {
+                        queue.put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        runnable.run();
+                    } finally {
+                        blockedTime.add(System.nanoTime() - start);
+                    }
+                });
+    }
+
+    /**
+     * Queue a task, blocking while the queue is full.  Tasks submitted by the commit thread itself and tasks
+     * submitted after shutdown are run immediately.
+     */
+    public void submit(Runnable task) {
+        submitted.increment();
+        if (executor == null || executor.isShutdown() || Thread.currentThread() == thread) {
+            run(task);
+            return;
+        }
+        executor.execute(() -> run(task));
+        maxSize.accumulate(queue.size());
+    }
+
+    /**
+     * Wait until all tasks submitted so far have completed
+     */
+    public void await() {
+        if (executor == null || executor.isShutdown() || Thread.currentThread() == thread) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(latch::countDown);
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Complete the queued tasks and stop the commit thread
+     */
+    void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                Logger.logShutdownMessage("Commit callbacks still running after 60 seconds, " + queue.size() + " queued");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Logger.logErrorMessage("Commit callback failed", e);
+        } finally {
+            completed.increment();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return  Number of tasks waiting in the queue
+     */
+    public int getSize() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * @return  Largest number of tasks seen waiting in the queue
+     */
+    public long getMaxSize() {
+        return maxSize.get();
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * @return  Number of times a committing thread had to wait because the queue was full
+     */
+    public long getBlocked() {
+        return blocked.sum();
+    }
+
+    /**
+     * @return  Total time in milliseconds committing threads have waited because the queue was full
+     */
+    public long getBlockedTime() {
+        return blockedTime.sum() / 1000000;
+    }
+}
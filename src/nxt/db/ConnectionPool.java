@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Source of database connections for {@link BasicDb}.  Closing a connection returned by
+ * {@link #getConnection()} gives it back to the pool.
+ */
+public interface ConnectionPool {
+
+    Connection getConnection() throws SQLException;
+
+    String getName();
+
+    int getMaxConnections();
+
+    int getActiveConnections();
+
+    void dispose();
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import nxt.util.Logger;
+import org.h2.jdbcx.JdbcDataSource;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Connection pool on top of the H2 pooled connections, like {@link org.h2.jdbcx.JdbcConnectionPool} but without
+ * a pool wide lock.  A connection is borrowed by taking a semaphore permit and polling the idle deque, both without
+ * blocking unless the pool is exhausted.
+ *
+ * Connections which have been idle for longer than {@link #VALIDATION_INTERVAL} are validated before being handed
+ * out.  The time spent waiting for a connection is recorded in a histogram.  If a leak threshold is set, the stack
+ * trace of the borrower is captured and logged when a connection is held for longer than that.
+ */
+public final class DbConnectionPool implements ConnectionPool, ConnectionEventListener {
+
+    /** Upper bounds of the wait time histogram buckets, in milliseconds, the last bucket has no bound */
+    public static final long[] WAIT_TIME_BUCKETS = {1, 10, 100, 1000, 10000};
+
+    static final long VALIDATION_INTERVAL = 30000;
+
+    private static final class Borrow {
+        private final long time = System.currentTimeMillis();
+        private final Throwable stack;
+        private volatile boolean reported;
+
+        private Borrow(Throwable stack) {
+            this.stack = stack;
+        }
+    }
+
+    private static final class Idle {
+        private final PooledConnection pc;
+        private final long time = System.currentTimeMillis();
+
+        private Idle(PooledConnection pc) {
+            this.pc = pc;
+        }
+    }
+
+    private final String name;
+    private final JdbcDataSource dataSource;
+    private final int maxConnections;
+    private final int loginTimeout;
+    private final long leakThreshold;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Idle> idle = new ConcurrentLinkedDeque<>();
+    private final Map<PooledConnection, Borrow> borrowed = new ConcurrentHashMap<>();
+    private final AtomicLongArray waitTimes = new AtomicLongArray(WAIT_TIME_BUCKETS.length + 1);
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private volatile boolean disposed;
+
+    /**
+     * @param loginTimeout seconds to wait for a connection when the pool is exhausted
+     * @param leakThreshold seconds a connection can be held before it is reported as leaked, 0 to disable
+     */
+    DbConnectionPool(String name, String dbUrl, String dbUsername, String dbPassword, int maxConnections,
+                     int loginTimeout, int leakThreshold) {
+        this.name = name;
+        this.dataSource = new JdbcDataSource();
+        dataSource.setURL(dbUrl);
+        dataSource.setUser(dbUsername);
+        dataSource.setPassword(dbPassword);
+        this.maxConnections = maxConnections;
+        this.loginTimeout = loginTimeout;
+        this.leakThreshold = leakThreshold * 1000L;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (disposed) {
+            throw new IllegalStateException("Connection pool " + name + " has been disposed");
+        }
+        long start = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            reportLeaks();
+            try {
+                if (!permits.tryAcquire(loginTimeout, TimeUnit.SECONDS)) {
+                    timeouts.incrementAndGet();
+                    logBorrowed();
+                    throw new SQLException("Login timeout, no connection available in pool " + name + " after "
+                            + loginTimeout + " s");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for a connection from pool " + name, e);
+            }
+        }
+        recordWaitTime((System.nanoTime() - start) / 1000000);
+        try {
+            PooledConnection pc;
+            Connection con;
+            while (true) {
+                Idle entry = idle.pollFirst();
+                if (entry == null) {
+                    pc = dataSource.getPooledConnection();
+                    pc.addConnectionEventListener(this);
+                    con = pc.getConnection();
+                    break;
+                }
+                pc = entry.pc;
+                try {
+                    con = pc.getConnection();
+                    if (System.currentTimeMillis() - entry.time < VALIDATION_INTERVAL || con.isValid(loginTimeout)) {
+                        break;
+                    }
+                } catch (SQLException e) {
+                    Logger.logDebugMessage("Pooled connection failed: " + e.toString());
+                }
+                invalid.incrementAndGet();
+                closePhysical(pc);
+            }
+            borrowed.put(pc, new Borrow(leakThreshold > 0 ? new Throwable("Connection borrowed from pool " + name) : null));
+            return con;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+        PooledConnection pc = (PooledConnection)event.getSource();
+        Borrow borrow = borrowed.remove(pc);
+        if (borrow == null) {
+            return;
+        }
+        long held = System.currentTimeMillis() - borrow.time;
+        if (leakThreshold > 0 && held > leakThreshold && !borrow.reported) {
+            leaks.incrementAndGet();
+            Logger.logWarningMessage("Connection from pool " + name + " was held for " + held + " ms", borrow.stack);
+        }
+        if (disposed) {
+            closePhysical(pc);
+        } else {
+            idle.offerFirst(new Idle(pc));
+        }
+        permits.release();
+    }
+
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+        PooledConnection pc = (PooledConnection)event.getSource();
+        if (borrowed.remove(pc) != null) {
+            invalid.incrementAndGet();
+            closePhysical(pc);
+            permits.release();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getLeaks() {
+        return leaks.get();
+    }
+
+    public long getInvalidConnections() {
+        return invalid.get();
+    }
+
+    public long getTotalWaitTime() {
+        return totalWaitTime.get();
+    }
+
+    /**
+     * Number of connections borrowed per wait time bucket, see {@link #WAIT_TIME_BUCKETS}
+     */
+    public long[] getWaitTimeHistogram() {
+        long[] histogram = new long[waitTimes.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = waitTimes.get(i);
+        }
+        return histogram;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) {
+            closePhysical(entry.pc);
+        }
+    }
+
+    private void recordWaitTime(long millis) {
+        totalWaitTime.addAndGet(millis);
+        int i = 0;
+        while (i < WAIT_TIME_BUCKETS.length && millis >= WAIT_TIME_BUCKETS[i]) {
+            i++;
+        }
+        waitTimes.incrementAndGet(i);
+    }
+
+    private void reportLeaks() {
+        if (leakThreshold <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Borrow borrow : borrowed.values()) {
+            if (!borrow.reported && now - borrow.time > leakThreshold) {
+                borrow.reported = true;
+                leaks.incrementAndGet();
+                Logger.logWarningMessage("Connection from pool " + name + " has been held for " + (now - borrow.time)
+                        + " ms and not yet returned", borrow.stack);
+            }
+        }
+    }
+
+    private void logBorrowed() {
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        for (Borrow borrow : borrowed.values()) {
+            sb.append(' ').append(now - borrow.time);
+        }
+        Logger.logWarningMessage("Connection pool " + name + " exhausted, " + borrowed.size()
+                + " connections held for (ms):" + sb);
+    }
+
+    private void closePhysical(PooledConnection pc) {
+        try {
+            pc.removeConnectionEventListener(this);
+            pc.close();
+        } catch (SQLException e) {
+            Logger.logDebugMessage("Failed to close pooled connection: " + e.toString());
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.db;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Position in a result set sorted in descending order of one or more numeric columns, used for keyset pagination.
+ * The next page is selected with a WHERE clause on the sort columns instead of an OFFSET, so that deep pages are as
+ * fast as the first one.  The string form is an opaque token to be passed back by API clients.
+ */
+public final class DbCursor {
+
+    private final long[] values;
+
+    public DbCursor(long... values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Empty cursor");
+        }
+        this.values = values.clone();
+    }
+
+    public static DbCursor parse(String cursor) {
+        byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+        if (bytes.length == 0 || bytes.length % 8 != 0) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] values = new long[bytes.length / 8];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getLong();
+        }
+        return new DbCursor(values);
+    }
+
+    static DbCursor read(ResultSet rs, String[] columns) throws SQLException {
+        long[] values = new long[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i];
+            values[i] = rs.getLong(column.substring(column.lastIndexOf('.') + 1));
+        }
+        return new DbCursor(values);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public long getValue(int index) {
+        return values[index];
+    }
+
+    DbClause getClause(String... columns) {
+        return new DbClause(DbUtils.cursorClause(this, columns)) {
+            @Override
+            protected int set(PreparedStatement pstmt, int index) throws SQLException {
+                return DbUtils.setCursor(index, pstmt, DbCursor.this);
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DbCursor && Arrays.equals(values, ((DbCursor) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8);
+        for (long value : values) {
+            buffer.putLong(value);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+}
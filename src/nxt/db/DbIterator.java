@@ -16,12 +16,27 @@
 
 package nxt.db;
 
+import nxt.Nxt;
+import nxt.util.Logger;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoCloseable {
 
@@ -29,19 +44,76 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
         T get(Connection con, ResultSet rs) throws Exception;
     }
 
+    private static final int fetchSize = Nxt.getIntProperty("nxt.dbFetchSize");
+
+    private static final int prefetchThreads = Nxt.getIntProperty("nxt.dbPrefetchThreads", 4);
+    private static final long prefetchTimeout = TimeUnit.SECONDS.toNanos(Nxt.getIntProperty("nxt.dbPrefetchTimeout", 60));
+
+    /**
+     * Each prefetching iterator holds a thread and a connection until it has been read or closed, without a free
+     * thread the rows are read by the caller instead
+     */
+    private static final ThreadPoolExecutor prefetchService = new ThreadPoolExecutor(0, Math.max(prefetchThreads, 1),
+            60, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "DbIterator prefetch " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static final Object END = new Object();
+
+    private static final class Failure {
+        private final RuntimeException e;
+
+        private Failure(RuntimeException e) {
+            this.e = e;
+        }
+    }
+
+    private static final class Row {
+        private final Object element;
+        private final DbCursor cursor;
+
+        private Row(Object element, DbCursor cursor) {
+            this.element = element;
+            this.cursor = cursor;
+        }
+    }
+
     private final Connection con;
     private final PreparedStatement pstmt;
     private final ResultSetReader<T> rsReader;
     private final ResultSet rs;
+    private final int height;
 
     private boolean hasNext;
     private boolean iterated;
 
+    private BlockingQueue<Object> buffer;
+    private Object nextElement;
+    private volatile boolean closed;
+    private volatile boolean abandoned;
+
+    private String[] cursorColumns;
+    private DbCursor cursor;
+
     public DbIterator(Connection con, PreparedStatement pstmt, ResultSetReader<T> rsReader) {
+        this(con, pstmt, rsReader, -1);
+    }
+
+    public DbIterator(Connection con, PreparedStatement pstmt, ResultSetReader<T> rsReader, int height) {
         this.con = con;
         this.pstmt = pstmt;
         this.rsReader = rsReader;
+        this.height = height;
         try {
+            if (fetchSize > 0) {
+                pstmt.setFetchSize(fetchSize);
+            }
             this.rs = pstmt.executeQuery();
             this.hasNext = rs.next();
         } catch (SQLException e) {
@@ -50,8 +122,119 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
         }
     }
 
+    /**
+     * Remember the values of the sort columns for each row returned, see getCursor().  Must be called before
+     * iterating or prefetching.
+     */
+    public DbIterator<T> trackCursor(String... columns) {
+        if (buffer != null) {
+            throw new IllegalStateException("Already prefetching");
+        }
+        cursorColumns = columns;
+        return this;
+    }
+
+    /**
+     * Read the remaining rows in a background thread, up to bufferSize rows ahead of the caller, and close the
+     * connection as soon as all rows have been read.  The ResultSetReader is then called in the background thread.
+     * Has no effect inside a database transaction, as the connection belongs to the transaction thread.
+     */
+    public DbIterator<T> prefetch(int bufferSize) {
+        if (buffer != null) {
+            throw new IllegalStateException("Already prefetching");
+        }
+        try {
+            // connections outside of a transaction are in auto-commit mode
+            if (!hasNext || !con.getAutoCommit()) {
+                return this;
+            }
+        } catch (SQLException e) {
+            close();
+            throw new RuntimeException(e.toString(), e);
+        }
+        if (prefetchThreads <= 0) {
+            return this;
+        }
+        buffer = new ArrayBlockingQueue<>(bufferSize);
+        try {
+            prefetchService.execute(this::fill);
+        } catch (RejectedExecutionException e) {
+            buffer = null;
+        }
+        return this;
+    }
+
+    private void fill() {
+        try {
+            while (hasNext && !closed) {
+                Object element;
+                try {
+                    element = rsReader.get(con, rs);
+                    if (cursorColumns != null) {
+                        element = new Row(element, DbCursor.read(rs, cursorColumns));
+                    }
+                    hasNext = rs.next();
+                } catch (Exception e) {
+                    element = new Failure(new RuntimeException(e.toString(), e));
+                    hasNext = false;
+                }
+                if (!offer(element)) {
+                    return;
+                }
+            }
+            offer(END);
+        } finally {
+            DbUtils.close(rs, pstmt, con);
+        }
+    }
+
+    /**
+     * Give up if the iterator is closed, or if the caller has not taken a row for nxt.dbPrefetchTimeout seconds,
+     * which is most likely an iterator that is never closed
+     */
+    private boolean offer(Object element) {
+        long start = System.nanoTime();
+        try {
+            while (!buffer.offer(element, 100, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    return false;
+                }
+                if (System.nanoTime() - start >= prefetchTimeout) {
+                    Logger.logDebugMessage("Prefetching iterator not read for " + TimeUnit.NANOSECONDS.toSeconds(prefetchTimeout)
+                            + " seconds, closing it");
+                    abandoned = true;
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     @Override
     public boolean hasNext() {
+        if (buffer != null) {
+            if (nextElement == null) {
+                try {
+                    while ((nextElement = buffer.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                        if (abandoned) {
+                            throw new IllegalStateException("Prefetching iterator not read for "
+                                    + TimeUnit.NANOSECONDS.toSeconds(prefetchTimeout) + " seconds, rows have been dropped");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new RuntimeException(e.toString(), e);
+                }
+            }
+            if (nextElement instanceof Failure) {
+                throw ((Failure) nextElement).e;
+            }
+            return nextElement != END;
+        }
         if (! hasNext) {
             DbUtils.close(rs, pstmt, con);
         }
@@ -60,12 +243,27 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
 
     @Override
     public T next() {
+        if (buffer != null) {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object element = nextElement;
+            nextElement = null;
+            if (element instanceof Row) {
+                cursor = ((Row) element).cursor;
+                element = ((Row) element).element;
+            }
+            return (T) element;
+        }
         if (! hasNext) {
             DbUtils.close(rs, pstmt, con);
             throw new NoSuchElementException();
         }
         try {
             T result = rsReader.get(con, rs);
+            if (cursorColumns != null) {
+                cursor = DbCursor.read(rs, cursorColumns);
+            }
             hasNext = rs.next();
             return result;
         } catch (Exception e) {
@@ -74,6 +272,21 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
         }
     }
 
+    /**
+     * @return the blockchain height as of which the rows are read, -1 if not known
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return position after the last row returned, to continue with the next page, null if no row has been returned
+     * or the cursor is not tracked
+     */
+    public DbCursor getCursor() {
+        return cursor;
+    }
+
     @Override
     public void remove() {
         throw new UnsupportedOperationException("Removal not supported");
@@ -81,6 +294,12 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
 
     @Override
     public void close() {
+        if (buffer != null) {
+            // the prefetch thread closes the connection
+            closed = true;
+            buffer.clear();
+            return;
+        }
         DbUtils.close(rs, pstmt, con);
     }
 
@@ -92,4 +311,13 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
         iterated = true;
         return this;
     }
+
+    /**
+     * Sequential stream of the remaining rows, closing the iterator when the stream is closed.  Can be made parallel,
+     * the rows are then read in batches and processed by the common fork join pool.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
 }
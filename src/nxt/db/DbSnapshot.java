@@ -0,0 +1,737 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import nxt.util.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar snapshot of database tables.
+ * <p>
+ * The rows of each table are written in groups of GROUP_ROWS rows.  Within a group the values are stored column
+ * by column: a null bitmap followed by the non-null values, integers as zigzag encoded deltas, booleans as a bitmap,
+ * strings and binary values prefixed by their length.  Each group is deflated and carries a CRC32 of its content,
+ * and the file ends with the SHA-256 digest of everything written before it.
+ * <p>
+ * The header records the database version and the height, id and hash of the last block in the snapshot.
+ */
+public final class DbSnapshot {
+
+    private static final int MAGIC = 0x4e585453;
+    private static final int FORMAT_VERSION = 1;
+    private static final int GROUP_ROWS = 8192;
+
+    private static final byte KIND_INTEGER = 1;
+    private static final byte KIND_BOOLEAN = 2;
+    private static final byte KIND_STRING = 3;
+    private static final byte KIND_BYTES = 4;
+    private static final byte KIND_ARRAY = 5;
+
+    private static final byte ELEMENT_NULL = 0;
+    private static final byte ELEMENT_LONG = 1;
+    private static final byte ELEMENT_INT = 2;
+    private static final byte ELEMENT_SHORT = 3;
+    private static final byte ELEMENT_BYTE = 4;
+    private static final byte ELEMENT_BOOLEAN = 5;
+    private static final byte ELEMENT_STRING = 6;
+    private static final byte ELEMENT_BYTES = 7;
+
+    public static final class Header {
+
+        private final int dbVersion;
+        private final int height;
+        private final long blockId;
+        private final byte[] blockHash;
+        private final List<String> tables;
+
+        private Header(int dbVersion, int height, long blockId, byte[] blockHash, List<String> tables) {
+            this.dbVersion = dbVersion;
+            this.height = height;
+            this.blockId = blockId;
+            this.blockHash = blockHash;
+            this.tables = Collections.unmodifiableList(tables);
+        }
+
+        public int getDbVersion() {
+            return dbVersion;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getBlockId() {
+            return blockId;
+        }
+
+        public byte[] getBlockHash() {
+            return blockHash;
+        }
+
+        public List<String> getTables() {
+            return tables;
+        }
+
+    }
+
+    /**
+     * Write a snapshot of the tables.  The caller must make sure the tables are not modified while they are written.
+     *
+     * @param   db              Database
+     * @param   out             Output stream, not closed by this method
+     * @param   tables          Tables in the order they are to be loaded
+     * @param   height          Height of the last block
+     * @param   blockId         Id of the last block
+     * @param   blockHash       Hash of the last block
+     * @return                  SHA-256 digest of the snapshot
+     * @throws  IOException     I/O error
+     */
+    public static byte[] write(BasicDb db, OutputStream out, List<String> tables, int height, long blockId, byte[] blockHash)
+            throws IOException {
+        MessageDigest digest = sha256();
+        DataOutputStream dataOut = new DataOutputStream(new DigestOutputStream(out, digest));
+        try (Connection con = db.getPooledConnection()) {
+            dataOut.writeInt(MAGIC);
+            dataOut.writeInt(FORMAT_VERSION);
+            dataOut.writeInt(getDbVersion(con));
+            dataOut.writeInt(height);
+            dataOut.writeLong(blockId);
+            dataOut.writeShort(blockHash.length);
+            dataOut.write(blockHash);
+            dataOut.writeInt(tables.size());
+            for (String table : tables) {
+                dataOut.writeUTF(table);
+            }
+            GroupWriter groupWriter = new GroupWriter(dataOut);
+            for (String table : tables) {
+                long rows = writeTable(con, dataOut, groupWriter, table);
+                Logger.logDebugMessage("Wrote " + rows + " rows of table " + table);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        dataOut.flush();
+        byte[] hash = digest.digest();
+        out.write(hash);
+        out.flush();
+        return hash;
+    }
+
+    /**
+     * Read the header of a snapshot
+     *
+     * @param   in              Input stream positioned at the start of the snapshot
+     * @return                  Snapshot header
+     * @throws  IOException     I/O error or invalid snapshot
+     */
+    public static Header readHeader(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        int formatVersion = dataIn.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + formatVersion);
+        }
+        int dbVersion = dataIn.readInt();
+        int height = dataIn.readInt();
+        long blockId = dataIn.readLong();
+        byte[] blockHash = new byte[dataIn.readUnsignedShort()];
+        dataIn.readFully(blockHash);
+        int tableCount = dataIn.readInt();
+        List<String> tables = new ArrayList<>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            tables.add(dataIn.readUTF());
+        }
+        return new Header(dbVersion, height, blockId, blockHash, tables);
+    }
+
+    /**
+     * Load a snapshot.  Existing rows of the tables in the snapshot are deleted.  Referential integrity is not
+     * checked while loading, the tables are loaded in the order they were written.
+     * <p>
+     * Rows of the last table are committed only after the snapshot digest has been verified and the verifier has
+     * accepted the snapshot, so the last table is empty unless the snapshot was loaded completely.  The rows of the
+     * other tables are deleted again if loading fails.
+     *
+     * @param   db              Database
+     * @param   in              Input stream, not closed by this method
+     * @param   verifier        Called with the loading connection before the last table is committed, throws a
+     *                          RuntimeException to reject the snapshot
+     * @return                  Snapshot header
+     * @throws  IOException     I/O error or invalid snapshot
+     */
+    public static Header load(BasicDb db, InputStream in, BiConsumer<Connection, Header> verifier) throws IOException {
+        MessageDigest digest = sha256();
+        DataInputStream dataIn = new DataInputStream(new DigestInputStream(in, digest));
+        Header header = readHeader(dataIn);
+        List<String> tables = header.getTables();
+        try (Connection con = db.getPooledConnection();
+             Statement stmt = con.createStatement()) {
+            if (getDbVersion(con) != header.getDbVersion()) {
+                throw new IOException("Snapshot database version " + header.getDbVersion()
+                        + " does not match database version " + getDbVersion(con));
+            }
+            con.setAutoCommit(false);
+            stmt.executeUpdate("SET REFERENTIAL_INTEGRITY FALSE");
+            try {
+                deleteAll(con, tables);
+                GroupReader groupReader = new GroupReader(dataIn);
+                for (int i = 0; i < tables.size(); i++) {
+                    long rows = readTable(con, dataIn, groupReader, tables.get(i), i < tables.size() - 1);
+                    Logger.logDebugMessage("Loaded " + rows + " rows of table " + tables.get(i));
+                }
+                byte[] expected = digest.digest();
+                byte[] actual = new byte[expected.length];
+                new DataInputStream(in).readFully(actual);
+                if (!Arrays.equals(expected, actual)) {
+                    throw new IOException("Snapshot digest does not match");
+                }
+                verifier.accept(con, header);
+                con.commit();
+            } catch (IOException | SQLException | RuntimeException e) {
+                con.rollback();
+                deleteAll(con, tables);
+                throw e;
+            } finally {
+                stmt.executeUpdate("SET REFERENTIAL_INTEGRITY TRUE");
+                con.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return header;
+    }
+
+    private static long writeTable(Connection con, DataOutputStream dataOut, GroupWriter groupWriter, String table)
+            throws IOException, SQLException {
+        long rows = 0;
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + (hasDbId(con, table) ? " ORDER BY db_id" : ""))) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            byte[] kinds = new byte[columnCount];
+            dataOut.writeUTF(table);
+            dataOut.writeShort(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                kinds[i] = getKind(metaData.getColumnType(i + 1), table + "." + metaData.getColumnName(i + 1));
+                dataOut.writeUTF(metaData.getColumnName(i + 1));
+                dataOut.writeInt(metaData.getColumnType(i + 1));
+                dataOut.writeByte(kinds[i]);
+            }
+            Object[][] columns = new Object[columnCount][GROUP_ROWS];
+            int count = 0;
+            while (rs.next()) {
+                for (int i = 0; i < columnCount; i++) {
+                    columns[i][count] = getValue(rs, i + 1, kinds[i]);
+                }
+                if (++count == GROUP_ROWS) {
+                    groupWriter.write(kinds, columns, count);
+                    rows += count;
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                groupWriter.write(kinds, columns, count);
+                rows += count;
+            }
+            dataOut.writeInt(0);
+        }
+        return rows;
+    }
+
+    private static long readTable(Connection con, DataInputStream dataIn, GroupReader groupReader, String table, boolean commit)
+            throws IOException, SQLException {
+        String name = dataIn.readUTF();
+        if (!name.equals(table)) {
+            throw new IOException("Expected table " + table + ", found " + name);
+        }
+        int columnCount = dataIn.readUnsignedShort();
+        byte[] kinds = new byte[columnCount];
+        int[] types = new int[columnCount];
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        for (int i = 0; i < columnCount; i++) {
+            sql.append(i > 0 ? ", " : "").append('"').append(dataIn.readUTF()).append('"');
+            types[i] = dataIn.readInt();
+            kinds[i] = dataIn.readByte();
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columnCount; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        sql.append(')');
+        long rows = 0;
+        try (PreparedStatement pstmt = con.prepareStatement(sql.toString())) {
+            Object[][] columns = new Object[columnCount][GROUP_ROWS];
+            int count;
+            while ((count = groupReader.read(kinds, columns)) > 0) {
+                for (int row = 0; row < count; row++) {
+                    for (int i = 0; i < columnCount; i++) {
+                        setValue(pstmt, i + 1, types[i], columns[i][row]);
+                    }
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                if (commit) {
+                    con.commit();
+                }
+                rows += count;
+            }
+        }
+        return rows;
+    }
+
+    private static final class GroupWriter {
+
+        private final DataOutputStream dataOut;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final Deflater deflater = new Deflater();
+        private final byte[] chunk = new byte[65536];
+
+        private GroupWriter(DataOutputStream dataOut) {
+            this.dataOut = dataOut;
+        }
+
+        private void write(byte[] kinds, Object[][] columns, int count) throws IOException {
+            buffer.reset();
+            for (int i = 0; i < kinds.length; i++) {
+                writeColumn(buffer, kinds[i], columns[i], count);
+            }
+            byte[] data = buffer.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            deflater.reset();
+            deflater.setInput(data);
+            deflater.finish();
+            buffer.reset();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                buffer.write(chunk, 0, length);
+            }
+            dataOut.writeInt(count);
+            dataOut.writeInt(data.length);
+            dataOut.writeInt(buffer.size());
+            buffer.writeTo(dataOut);
+            dataOut.writeInt((int) crc.getValue());
+        }
+
+    }
+
+    private static final class GroupReader {
+
+        private final DataInputStream dataIn;
+        private final Inflater inflater = new Inflater();
+
+        private GroupReader(DataInputStream dataIn) {
+            this.dataIn = dataIn;
+        }
+
+        private int read(byte[] kinds, Object[][] columns) throws IOException {
+            int count = dataIn.readInt();
+            if (count == 0) {
+                return 0;
+            }
+            if (count < 0 || count > GROUP_ROWS) {
+                throw new IOException("Invalid row count " + count);
+            }
+            int length = dataIn.readInt();
+            byte[] compressed = new byte[dataIn.readInt()];
+            dataIn.readFully(compressed);
+            int expectedCrc = dataIn.readInt();
+            byte[] data = new byte[length];
+            inflater.reset();
+            inflater.setInput(compressed);
+            try {
+                if (inflater.inflate(data) != length || !inflater.finished()) {
+                    throw new IOException("Row group length does not match");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Row group is corrupted", e);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Row group checksum does not match");
+            }
+            Input input = new Input(data);
+            for (int i = 0; i < kinds.length; i++) {
+                readColumn(input, kinds[i], columns[i], count);
+            }
+            if (input.position != data.length) {
+                throw new IOException("Row group has trailing data");
+            }
+            return count;
+        }
+
+    }
+
+    private static void writeColumn(ByteArrayOutputStream out, byte kind, Object[] values, int count) {
+        byte[] nulls = new byte[(count + 7) / 8];
+        for (int row = 0; row < count; row++) {
+            if (values[row] == null) {
+                nulls[row >> 3] |= 1 << (row & 7);
+            }
+        }
+        out.write(nulls, 0, nulls.length);
+        switch (kind) {
+            case KIND_INTEGER:
+                long previous = 0;
+                for (int row = 0; row < count; row++) {
+                    if (values[row] != null) {
+                        long value = (Long) values[row];
+                        writeVarLong(out, value - previous);
+                        previous = value;
+                    }
+                }
+                break;
+            case KIND_BOOLEAN:
+                byte[] bits = new byte[(count + 7) / 8];
+                for (int row = 0; row < count; row++) {
+                    if (Boolean.TRUE.equals(values[row])) {
+                        bits[row >> 3] |= 1 << (row & 7);
+                    }
+                }
+                out.write(bits, 0, bits.length);
+                break;
+            case KIND_STRING:
+                for (int row = 0; row < count; row++) {
+                    if (values[row] != null) {
+                        writeBytes(out, ((String) values[row]).getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                break;
+            case KIND_BYTES:
+                for (int row = 0; row < count; row++) {
+                    if (values[row] != null) {
+                        writeBytes(out, (byte[]) values[row]);
+                    }
+                }
+                break;
+            case KIND_ARRAY:
+                for (int row = 0; row < count; row++) {
+                    if (values[row] != null) {
+                        Object[] array = (Object[]) values[row];
+                        writeVarLong(out, array.length);
+                        for (Object element : array) {
+                            writeElement(out, element);
+                        }
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown column kind " + kind);
+        }
+    }
+
+    private static void readColumn(Input in, byte kind, Object[] values, int count) throws IOException {
+        byte[] nulls = in.readBytes((count + 7) / 8);
+        switch (kind) {
+            case KIND_INTEGER:
+                long previous = 0;
+                for (int row = 0; row < count; row++) {
+                    if (isSet(nulls, row)) {
+                        values[row] = null;
+                    } else {
+                        previous += in.readVarLong();
+                        values[row] = previous;
+                    }
+                }
+                break;
+            case KIND_BOOLEAN:
+                byte[] bits = in.readBytes((count + 7) / 8);
+                for (int row = 0; row < count; row++) {
+                    values[row] = isSet(nulls, row) ? null : isSet(bits, row);
+                }
+                break;
+            case KIND_STRING:
+                for (int row = 0; row < count; row++) {
+                    values[row] = isSet(nulls, row) ? null : new String(in.readBytes(), StandardCharsets.UTF_8);
+                }
+                break;
+            case KIND_BYTES:
+                for (int row = 0; row < count; row++) {
+                    values[row] = isSet(nulls, row) ? null : in.readBytes();
+                }
+                break;
+            case KIND_ARRAY:
+                for (int row = 0; row < count; row++) {
+                    if (isSet(nulls, row)) {
+                        values[row] = null;
+                    } else {
+                        Object[] array = new Object[in.readLength()];
+                        for (int i = 0; i < array.length; i++) {
+                            array[i] = readElement(in);
+                        }
+                        values[row] = array;
+                    }
+                }
+                break;
+            default:
+                throw new IOException("Unknown column kind " + kind);
+        }
+    }
+
+    private static void writeElement(ByteArrayOutputStream out, Object element) {
+        if (element == null) {
+            out.write(ELEMENT_NULL);
+        } else if (element instanceof Long) {
+            out.write(ELEMENT_LONG);
+            writeVarLong(out, (Long) element);
+        } else if (element instanceof Integer) {
+            out.write(ELEMENT_INT);
+            writeVarLong(out, (Integer) element);
+        } else if (element instanceof Short) {
+            out.write(ELEMENT_SHORT);
+            writeVarLong(out, (Short) element);
+        } else if (element instanceof Byte) {
+            out.write(ELEMENT_BYTE);
+            writeVarLong(out, (Byte) element);
+        } else if (element instanceof Boolean) {
+            out.write(ELEMENT_BOOLEAN);
+            out.write((Boolean) element ? 1 : 0);
+        } else if (element instanceof String) {
+            out.write(ELEMENT_STRING);
+            writeBytes(out, ((String) element).getBytes(StandardCharsets.UTF_8));
+        } else if (element instanceof byte[]) {
+            out.write(ELEMENT_BYTES);
+            writeBytes(out, (byte[]) element);
+        } else {
+            throw new IllegalArgumentException("Unsupported array element " + element.getClass().getName());
+        }
+    }
+
+    private static Object readElement(Input in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case ELEMENT_NULL:
+                return null;
+            case ELEMENT_LONG:
+                return in.readVarLong();
+            case ELEMENT_INT:
+                return (int) in.readVarLong();
+            case ELEMENT_SHORT:
+                return (short) in.readVarLong();
+            case ELEMENT_BYTE:
+                return (byte) in.readVarLong();
+            case ELEMENT_BOOLEAN:
+                return in.readByte() != 0;
+            case ELEMENT_STRING:
+                return new String(in.readBytes(), StandardCharsets.UTF_8);
+            case ELEMENT_BYTES:
+                return in.readBytes();
+            default:
+                throw new IOException("Unknown array element type " + tag);
+        }
+    }
+
+    private static byte getKind(int type, String column) {
+        switch (type) {
+            case Types.BIGINT:
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return KIND_INTEGER;
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return KIND_BOOLEAN;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.CLOB:
+                return KIND_STRING;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return KIND_BYTES;
+            case Types.ARRAY:
+                return KIND_ARRAY;
+            default:
+                throw new IllegalArgumentException("Unsupported type " + type + " of column " + column);
+        }
+    }
+
+    private static Object getValue(ResultSet rs, int index, byte kind) throws SQLException {
+        Object value;
+        switch (kind) {
+            case KIND_INTEGER:
+                value = rs.getLong(index);
+                break;
+            case KIND_BOOLEAN:
+                value = rs.getBoolean(index);
+                break;
+            case KIND_STRING:
+                value = rs.getString(index);
+                break;
+            case KIND_BYTES:
+                value = rs.getBytes(index);
+                break;
+            default:
+                Array array = rs.getArray(index);
+                value = array == null ? null : array.getArray();
+                break;
+        }
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void setValue(PreparedStatement pstmt, int index, int type, Object value) throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, type);
+        } else if (value instanceof Long) {
+            pstmt.setLong(index, (Long) value);
+        } else if (value instanceof Boolean) {
+            pstmt.setBoolean(index, (Boolean) value);
+        } else if (value instanceof String) {
+            pstmt.setString(index, (String) value);
+        } else if (value instanceof byte[]) {
+            pstmt.setBytes(index, (byte[]) value);
+        } else {
+            pstmt.setObject(index, value);
+        }
+    }
+
+    private static boolean hasDbId(Connection con, String table) throws SQLException {
+        try (ResultSet rs = con.getMetaData().getColumns(null, null, table.toUpperCase(), "DB_ID")) {
+            return rs.next();
+        }
+    }
+
+    private static int getDbVersion(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT next_update FROM version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void deleteAll(Connection con, List<String> tables) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            for (String table : tables) {
+                stmt.executeUpdate("DELETE FROM " + table);
+            }
+            con.commit();
+        }
+    }
+
+    private static boolean isSet(byte[] bits, int row) {
+        return (bits[row >> 3] & (1 << (row & 7))) != 0;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static final class Input {
+
+        private final byte[] data;
+        private int position;
+
+        private Input(byte[] data) {
+            this.data = data;
+        }
+
+        private byte readByte() throws IOException {
+            if (position >= data.length) {
+                throw new EOFException("Row group is truncated");
+            }
+            return data[position++];
+        }
+
+        private long readVarLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IOException("Invalid variable length integer");
+        }
+
+        private int readLength() throws IOException {
+            long length = readVarLong();
+            if (length < 0 || length > data.length - position) {
+                throw new IOException("Invalid length " + length);
+            }
+            return (int) length;
+        }
+
+        private byte[] readBytes() throws IOException {
+            return readBytes(readLength());
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            if (length > data.length - position) {
+                throw new EOFException("Row group is truncated");
+            }
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private DbSnapshot() {}
+
+}
@@ -151,6 +151,36 @@ public final class DbUtils {
         return index;
     }
 
+    /**
+     * Keyset condition selecting the rows after the cursor, for a query sorted in descending order of the columns
+     */
+    public static String cursorClause(DbCursor cursor, String... columns) {
+        if (cursor == null) {
+            return " TRUE ";
+        }
+        if (cursor.size() != columns.length) {
+            throw new IllegalArgumentException("Cursor does not match the sort columns");
+        }
+        StringBuilder clause = new StringBuilder(columns[columns.length - 1]).append(" < ?");
+        for (int i = columns.length - 2; i >= 0; i--) {
+            clause.insert(0, "(" + columns[i] + " < ? OR " + columns[i] + " = ? AND ").append(")");
+        }
+        return " " + columns[0] + " <= ? AND " + clause + " ";
+    }
+
+    public static int setCursor(int index, PreparedStatement pstmt, DbCursor cursor) throws SQLException {
+        if (cursor == null) {
+            return index;
+        }
+        pstmt.setLong(index++, cursor.getValue(0));
+        for (int i = 0; i < cursor.size() - 1; i++) {
+            pstmt.setLong(index++, cursor.getValue(i));
+            pstmt.setLong(index++, cursor.getValue(i));
+        }
+        pstmt.setLong(index++, cursor.getValue(cursor.size() - 1));
+        return index;
+    }
+
     private DbUtils() {} // never
 
 }
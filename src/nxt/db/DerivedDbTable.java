@@ -64,6 +64,11 @@ public abstract class DerivedDbTable {
         //nothing to trim
     }
 
+    public boolean isTrimmedInChunks() {
+        //tables trimmed in chunks take the blockchain read lock and commit for each chunk themselves
+        return false;
+    }
+
     public void createSearchIndex(Connection con) throws SQLException {
         //implemented in EntityDbTable only
     }
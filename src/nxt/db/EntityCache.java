@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import nxt.Nxt;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of the latest version of table entities, shared between threads and surviving database
+ * transactions.  It is only used for reads outside of a database transaction, so block processing never sees
+ * (and never modifies) the shared instances.
+ *
+ * Entries are invalidated when the key is inserted or deleted, and the whole cache is cleared on rollback,
+ * truncate and trim.  Invalidations are repeated once the database transaction is committed or rolled back, and
+ * every invalidation increments a generation counter: a reader only caches what it loaded if no invalidation
+ * happened since it started its query, so a value read before a commit can not be cached after it.
+ */
+public final class EntityCache<T> implements TransactionalDb.TransactionCallback {
+
+    private final String table;
+    private final int capacity;
+    private final TransactionalDb db;
+    private final Map<DbKey, Entry<T>> cache;
+    private final ThreadLocal<Set<DbKey>> pendingKeys = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> pendingClear = new ThreadLocal<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long generation;
+
+    private static final class Entry<T> {
+        private final T t;
+        private final int height;
+
+        private Entry(T t, int height) {
+            this.t = t;
+            this.height = height;
+        }
+    }
+
+    EntityCache(TransactionalDb db, String table, int capacity) {
+        this.db = db;
+        this.table = table;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<DbKey, Entry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DbKey, Entry<T>> eldest) {
+                return size() > EntityCache.this.capacity;
+            }
+        };
+    }
+
+    synchronized T get(DbKey dbKey) {
+        Entry<T> entry = cache.get(dbKey);
+        if (entry != null && entry.height <= Nxt.getBlockchain().getHeight()) {
+            hits.incrementAndGet();
+            return entry.t;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    synchronized void put(DbKey dbKey, T t, long generation, int height) {
+        if (this.generation == generation) {
+            cache.put(dbKey, new Entry<>(t, height));
+        }
+    }
+
+    void invalidate(DbKey dbKey) {
+        synchronized (this) {
+            generation++;
+            cache.remove(dbKey);
+        }
+        if (db.isInTransaction()) {
+            Set<DbKey> keys = pendingKeys.get();
+            if (keys == null) {
+                keys = new HashSet<>();
+                pendingKeys.set(keys);
+                db.registerCallback(this);
+            }
+            keys.add(dbKey);
+        }
+    }
+
+    void invalidateAll() {
+        clear();
+        if (db.isInTransaction()) {
+            pendingClear.set(Boolean.TRUE);
+            db.registerCallback(this);
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        cache.clear();
+    }
+
+    @Override
+    public void commit() {
+        invalidatePending();
+    }
+
+    @Override
+    public void rollback() {
+        invalidatePending();
+    }
+
+    private void invalidatePending() {
+        Set<DbKey> keys = pendingKeys.get();
+        boolean clear = pendingClear.get() != null;
+        pendingKeys.remove();
+        pendingClear.remove();
+        synchronized (this) {
+            generation++;
+            if (clear) {
+                cache.clear();
+            } else if (keys != null) {
+                keys.forEach(cache::remove);
+            }
+        }
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getSize() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+}
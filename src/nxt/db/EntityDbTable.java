@@ -27,10 +27,15 @@ import java.sql.SQLException;
 
 public abstract class EntityDbTable<T> extends DerivedDbTable {
 
+    private static final boolean batchInserts = Nxt.getBooleanProperty("nxt.dbBatchInserts");
+
+    private static final String[] CURSOR_COLUMNS = {"height", "db_id"};
+
     private final boolean multiversion;
     protected final DbKey.Factory<T> dbKeyFactory;
     private final String defaultSort;
     private final String fullTextSearchColumns;
+    private final EntityCache<T> sharedCache;
 
     protected EntityDbTable(String table, DbKey.Factory<T> dbKeyFactory) {
         this(table, dbKeyFactory, false, null);
@@ -46,6 +51,8 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         this.multiversion = multiversion;
         this.defaultSort = " ORDER BY " + (multiversion ? dbKeyFactory.getPKColumns() : " height DESC, db_id DESC ");
         this.fullTextSearchColumns = fullTextSearchColumns;
+        int sharedCacheSize = Nxt.getIntProperty("nxt.entityCacheSize." + table, Nxt.getIntProperty("nxt.entityCacheSize"));
+        this.sharedCache = sharedCacheSize > 0 ? new EntityCache<>(db, table, sharedCacheSize) : null;
     }
 
     protected abstract T load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException;
@@ -56,10 +63,34 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         return defaultSort;
     }
 
+    /**
+     * Sort columns used for cursor pagination, rows are then returned in descending order of these columns.  The
+     * columns must be numeric and identify a row, which is the case with the default height and db_id.
+     */
+    protected String[] cursorColumns() {
+        return CURSOR_COLUMNS;
+    }
+
     protected void clearCache() {
         db.clearCache(table);
     }
 
+    public final EntityCache<T> getSharedCache() {
+        return sharedCache;
+    }
+
+    final void invalidateSharedCache(DbKey dbKey) {
+        if (sharedCache != null) {
+            sharedCache.invalidate(dbKey);
+        }
+    }
+
+    final void invalidateSharedCache() {
+        if (sharedCache != null) {
+            sharedCache.invalidateAll();
+        }
+    }
+
     public void checkAvailable(int height) {
         if (multiversion) {
             int minRollBackHeight = isPersistent() && Nxt.getBlockchainProcessor().isScanning() ?
@@ -93,18 +124,55 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         return get(dbKey, true);
     }
 
+    /**
+     * Same as {@link #get(DbKey)} for tables with a single long key, without creating a DbKey if the entity is
+     * already cached in the current database transaction
+     */
+    public final T get(long id) {
+        if (!(dbKeyFactory instanceof DbKey.LongKeyFactory)) {
+            throw new UnsupportedOperationException("Table " + table + " does not have a long key");
+        }
+        if (db.isInTransaction()) {
+            T t = (T) db.getCache(table).get(id);
+            if (t != null) {
+                return t;
+            }
+        }
+        return get(((DbKey.LongKeyFactory<T>) dbKeyFactory).newKey(id), true);
+    }
+
     public final T get(DbKey dbKey, boolean cache) {
-        if (cache && db.isInTransaction()) {
+        int snapshotHeight = getSnapshotHeight();
+        if (snapshotHeight >= 0) {
+            return get(dbKey, snapshotHeight);
+        }
+        boolean inTransaction = db.isInTransaction();
+        if (cache && inTransaction) {
             T t = (T) db.getCache(table).get(dbKey);
             if (t != null) {
                 return t;
             }
         }
+        boolean useSharedCache = cache && !inTransaction && sharedCache != null;
+        long generation = 0;
+        int height = 0;
+        if (useSharedCache) {
+            T t = sharedCache.get(dbKey);
+            if (t != null) {
+                return t;
+            }
+            generation = sharedCache.getGeneration();
+            height = Nxt.getBlockchain().getHeight();
+        }
         try (Connection con = db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + dbKeyFactory.getPKClause()
              + (multiversion ? " AND latest = TRUE LIMIT 1" : ""))) {
             dbKey.setPK(pstmt);
-            return get(con, pstmt, cache);
+            T t = get(con, pstmt, cache);
+            if (useSharedCache && t != null) {
+                sharedCache.put(dbKey, t, generation, height);
+            }
+            return t;
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
@@ -132,6 +200,10 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     public final T getBy(DbClause dbClause) {
+        int snapshotHeight = getSnapshotHeight();
+        if (snapshotHeight >= 0) {
+            return getBy(dbClause, snapshotHeight);
+        }
         try (Connection con = db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table
                      + " WHERE " + dbClause.getClause() + (multiversion ? " AND latest = TRUE LIMIT 1" : ""))) {
@@ -194,6 +266,10 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     public final DbIterator<T> getManyBy(DbClause dbClause, int from, int to, String sort) {
+        int snapshotHeight = getSnapshotHeight();
+        if (snapshotHeight >= 0) {
+            return getManyBy(dbClause, snapshotHeight, from, to, sort);
+        }
         Connection con = null;
         try {
             con = db.getConnection();
@@ -210,6 +286,19 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
     }
 
+    /**
+     * Rows after the cursor, or from the start if the cursor is null, in the order of cursorColumns().  The returned
+     * iterator tracks the cursor of the rows it returns.
+     */
+    public final DbIterator<T> getManyBy(DbClause dbClause, DbCursor cursor, int from, int to) {
+        String[] columns = cursorColumns();
+        if (cursor != null) {
+            dbClause = dbClause.and(cursor.getClause(columns));
+        }
+        return getManyBy(dbClause, from, to, " ORDER BY " + String.join(" DESC, ", columns) + " DESC ")
+                .trackCursor(columns);
+    }
+
     public final DbIterator<T> getManyBy(DbClause dbClause, int height, int from, int to) {
         return getManyBy(dbClause, height, from, to, defaultSort());
     }
@@ -237,7 +326,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
                 pstmt.setInt(++i, height);
             }
             i = DbUtils.setLimits(++i, pstmt, from, to);
-            return getManyBy(con, pstmt, false);
+            return getManyBy(con, pstmt, false, height);
         } catch (SQLException e) {
             DbUtils.close(con);
             throw new RuntimeException(e.toString(), e);
@@ -245,6 +334,10 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     public final DbIterator<T> getManyBy(Connection con, PreparedStatement pstmt, boolean cache) {
+        return getManyBy(con, pstmt, cache, Nxt.getBlockchain().getHeight());
+    }
+
+    private DbIterator<T> getManyBy(Connection con, PreparedStatement pstmt, boolean cache, int height) {
         final boolean doCache = cache && db.isInTransaction();
         return new DbIterator<>(con, pstmt, (connection, rs) -> {
             T t = null;
@@ -260,7 +353,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
                 }
             }
             return t;
-        });
+        }, height);
     }
 
     public final DbIterator<T> search(String query, DbClause dbClause, int from, int to) {
@@ -293,6 +386,10 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     public final DbIterator<T> getAll(int from, int to, String sort) {
+        int snapshotHeight = getSnapshotHeight();
+        if (snapshotHeight >= 0) {
+            return getAll(snapshotHeight, from, to, sort);
+        }
         Connection con = null;
         try {
             con = db.getConnection();
@@ -307,6 +404,10 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
     }
 
+    public final DbIterator<T> getAll(DbCursor cursor, int from, int to) {
+        return getManyBy(DbClause.EMPTY_CLAUSE, cursor, from, to);
+    }
+
     public final DbIterator<T> getAll(int height, int from, int to) {
         return getAll(height, from, to, defaultSort());
     }
@@ -332,7 +433,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
                 pstmt.setInt(++i, height);
             }
             i = DbUtils.setLimits(++i, pstmt, from, to);
-            return getManyBy(con, pstmt, false);
+            return getManyBy(con, pstmt, false, height);
         } catch (SQLException e) {
             DbUtils.close(con);
             throw new RuntimeException(e.toString(), e);
@@ -350,6 +451,10 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     public final int getCount(DbClause dbClause) {
+        int snapshotHeight = getSnapshotHeight();
+        if (snapshotHeight >= 0) {
+            return getCount(dbClause, snapshotHeight);
+        }
         try (Connection con = db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT COUNT(*) FROM " + table
                      + " WHERE " + dbClause.getClause() + (multiversion ? " AND latest = TRUE" : ""))) {
@@ -420,22 +525,42 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
             throw new IllegalStateException("Different instance found in Db cache, perhaps trying to save an object "
                     + "that was read outside the current transaction");
         }
-        try (Connection con = db.getConnection()) {
-            if (multiversion) {
-                try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
-                        + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
-                    dbKey.setPK(pstmt);
-                    pstmt.executeUpdate();
+        invalidateSharedCache(dbKey);
+        if (batchInserts) {
+            try {
+                PendingInserts pendingInserts = db.getPendingWriter(table, PendingInserts::new);
+                if (pendingInserts.contains(dbKey)) {
+                    db.flushPendingWriter(table);
+                    pendingInserts = db.getPendingWriter(table, PendingInserts::new);
                 }
+                pendingInserts.add(dbKey);
+                insert(pendingInserts, dbKey, t);
+            } catch (SQLException e) {
+                throw new RuntimeException(e.toString(), e);
             }
-            save(con, t);
+            return;
+        }
+        try (Connection con = db.getConnection()) {
+            insert(con, dbKey, t);
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
     }
 
+    private void insert(Connection con, DbKey dbKey, T t) throws SQLException {
+        if (multiversion) {
+            try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
+                    + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
+                dbKey.setPK(pstmt);
+                pstmt.executeUpdate();
+            }
+        }
+        save(con, t);
+    }
+
     @Override
     public void rollback(int height) {
+        invalidateSharedCache();
         if (multiversion) {
             VersionedEntityDbTable.rollback(db, table, height, dbKeyFactory);
         } else {
@@ -443,8 +568,15 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
     }
 
+    @Override
+    public void truncate() {
+        invalidateSharedCache();
+        super.truncate();
+    }
+
     @Override
     public void trim(int height) {
+        invalidateSharedCache();
         if (multiversion) {
             VersionedEntityDbTable.trim(db, table, height, dbKeyFactory);
         } else {
@@ -452,6 +584,11 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
     }
 
+    @Override
+    public boolean isTrimmedInChunks() {
+        return multiversion;
+    }
+
     @Override
     public final void createSearchIndex(Connection con) throws SQLException {
         if (fullTextSearchColumns != null) {
@@ -460,6 +597,19 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
     }
 
+    /**
+     * @return the height of the read snapshot of the current thread if more blocks have been applied since it was
+     * started, -1 if the latest rows can be read
+     */
+    private int getSnapshotHeight() {
+        int height = db.getSnapshotHeight();
+        if (height < 0 || Nxt.getBlockchain().getHeight() <= height || Nxt.getBlockchainProcessor().isScanning()
+                || height < Nxt.getBlockchainProcessor().getMinRollbackHeight()) {
+            return -1;
+        }
+        return height;
+    }
+
     private boolean doesNotExceed(int height) {
         return Nxt.getBlockchain().getHeight() <= height && ! (isPersistent() && Nxt.getBlockchainProcessor().isScanning());
     }
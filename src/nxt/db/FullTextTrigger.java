@@ -17,6 +17,7 @@
 package nxt.db;
 
 import nxt.Db;
+import nxt.Nxt;
 import nxt.util.Logger;
 import nxt.util.ReadWriteUpdateLock;
 import org.apache.lucene.analysis.Analyzer;
@@ -26,7 +27,6 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
@@ -35,6 +35,7 @@ import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
@@ -52,10 +53,12 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.StringJoiner;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 /**
@@ -94,6 +97,15 @@ import java.util.stream.Stream;
  *
  * The table index trigger is defined as follows:
  *   CREATE TRIGGER trigger_name AFTER INSERT,UPDATE,DELETE ON table_name FOR EACH ROW CALL "FullTextTrigger"
+ *
+ * Index updates are queued when the database transaction is committed and made
+ * visible to searches when the queued commit task runs on the CommitCallbacks
+ * thread, shortly after the commit (near real-time search).  With
+ * nxt.dbCommitQueueSize=0 the task runs before the commit returns and updates
+ * are visible immediately, as before.  Updates are committed to disk only every
+ * nxt.fullTextCommitInterval seconds or after nxt.fullTextCommitUpdates updates.
+ * The index is marked as dirty while it is open, and it is rebuilt from the
+ * database if it was not closed properly.
  */
 public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCallback {
 
@@ -115,11 +127,8 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     /** Lucene directory */
     private static Directory directory;
 
-    /** Lucene index reader (thread-safe) */
-    private static DirectoryReader indexReader;
-
-    /** Lucene index searcher (thread-safe) */
-    private static IndexSearcher indexSearcher;
+    /** Lucene searcher manager (thread-safe) */
+    private static SearcherManager searcherManager;
 
     /** Lucene index writer (thread-safe) */
     private static IndexWriter indexWriter;
@@ -127,6 +136,21 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     /** Lucene analyzer (thread-safe) */
     private static final Analyzer analyzer = new StandardAnalyzer();
 
+    /** Maximum time between index commits (milliseconds) */
+    private static long commitInterval;
+
+    /** Maximum number of uncommitted index updates */
+    private static int commitUpdates;
+
+    /** Time of the last index commit */
+    private static volatile long lastCommitTime;
+
+    /** Number of uncommitted index updates */
+    private static final AtomicInteger pendingUpdates = new AtomicInteger();
+
+    /** Index was not closed properly and must be rebuilt */
+    private static volatile boolean recoveryNeeded = false;
+
     /** Index trigger is enabled */
     private volatile boolean isEnabled = false;
 
@@ -260,6 +284,8 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
      */
     public static void reindex(Connection conn) throws SQLException {
         Logger.logInfoMessage("Rebuilding the Lucene search index");
+        recoveryNeeded = false;
+        Db.db.awaitCommitTasks();
         try {
             //
             // Delete the current Lucene index
@@ -277,6 +303,20 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         Logger.logInfoMessage("Lucene search index successfully rebuilt");
     }
 
+    /**
+     * Rebuild the Lucene index if it was not closed properly
+     *
+     * This method should be called once the database triggers have been initialized
+     *
+     * @param   conn                SQL connection
+     * @throws  SQLException        Unable to reindex tables
+     */
+    public static void recoverIndex(Connection conn) throws SQLException {
+        if (recoveryNeeded) {
+            reindex(conn);
+        }
+    }
+
     /**
      * Create the fulltext index for a table
      *
@@ -291,6 +331,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         String upperSchema = schema.toUpperCase();
         String upperTable = table.toUpperCase();
         String tableName = upperSchema + "." + upperTable;
+        Db.db.awaitCommitTasks();
         getIndexAccess(conn);
         //
         // Drop an existing index and the associated database trigger
@@ -337,6 +378,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         String upperSchema = schema.toUpperCase();
         String upperTable = table.toUpperCase();
         boolean reindex = false;
+        Db.db.awaitCommitTasks();
         //
         // Drop an existing database trigger
         //
@@ -368,6 +410,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
      * @throws  SQLException        Unable to drop fulltext indexes
      */
     public static void dropAll(Connection conn) throws SQLException {
+        Db.db.awaitCommitTasks();
         //
         // Drop existing triggers
         //
@@ -430,7 +473,9 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         // The _MODIFIED field contains the row modification time (YYYYMMDDhhmmss) in GMT
         //
         indexLock.readLock().lock();
+        IndexSearcher indexSearcher = null;
         try {
+            indexSearcher = searcherManager.acquire();
             QueryParser parser = new QueryParser("_DATA", analyzer);
             parser.setDateResolution("_MODIFIED", DateTools.Resolution.SECOND);
             parser.setDefaultOperator(QueryParser.Operator.AND);
@@ -456,6 +501,13 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
             Logger.logErrorMessage("Unable to search Lucene index", exc);
             throw new SQLException("Unable to search Lucene index", exc);
         } finally {
+            if (indexSearcher != null) {
+                try {
+                    searcherManager.release(indexSearcher);
+                } catch (IOException exc) {
+                    Logger.logErrorMessage("Unable to release Lucene index searcher", exc);
+                }
+            }
             indexLock.readLock().unlock();
         }
         return result;
@@ -599,12 +651,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         // Commit the change immediately if we are not in a transaction
         //
         if (!Db.db.isInTransaction()) {
-            try {
-                commitRow(oldRow, newRow);
-                commitIndex();
-            } catch (SQLException exc) {
-                Logger.logErrorMessage("Unable to update the Lucene index", exc);
-            }
+            Db.db.submitCommitTask(() -> commitRows(Collections.singletonList(new TableUpdate(null, oldRow, newRow))));
             return;
         }
         //
@@ -626,30 +673,42 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     @Override
     public void commit() {
         Thread thread = Thread.currentThread();
-        try {
-            //
-            // Update the Lucene index.  Note that a database transaction is associated
-            // with a single thread.  So we will commit just those updates generated
-            // by the current thread.
-            //
-            boolean commit = false;
-            synchronized(tableUpdates) {
-                Iterator<TableUpdate> updateIt = tableUpdates.iterator();
-                while (updateIt.hasNext()) {
-                    TableUpdate update = updateIt.next();
-                    if (update.getThread() == thread) {
-                        commitRow(update.getOldRow(), update.getNewRow());
-                        updateIt.remove();
-                        commit = true;
-                    }
+        //
+        // Collect the updates for the current transaction.  Note that a database transaction
+        // is associated with a single thread.  So we will commit just those updates generated
+        // by the current thread.  The Lucene index is updated by the commit thread after the
+        // blockchain lock has been released.
+        //
+        List<TableUpdate> updates = new ArrayList<>();
+        synchronized(tableUpdates) {
+            Iterator<TableUpdate> updateIt = tableUpdates.iterator();
+            while (updateIt.hasNext()) {
+                TableUpdate update = updateIt.next();
+                if (update.getThread() == thread) {
+                    updates.add(update);
+                    updateIt.remove();
                 }
             }
-            //
-            // Commit the index updates
-            //
-            if (commit) {
-                commitIndex();
+        }
+        if (!updates.isEmpty()) {
+            Db.db.submitCommitTask(() -> commitRows(updates));
+        }
+    }
+
+    /**
+     * Update the Lucene index for committed table updates and make the updates visible
+     *
+     * @param   updates             Table updates in the order they were made
+     */
+    private void commitRows(List<TableUpdate> updates) {
+        if (!isEnabled) {
+            return;
+        }
+        try {
+            for (TableUpdate update : updates) {
+                commitRow(update.getOldRow(), update.getNewRow());
             }
+            refreshIndex();
         } catch (SQLException exc) {
             Logger.logErrorMessage("Unable to update the Lucene index", exc);
         }
@@ -754,6 +813,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
             }
             document.add(new TextField("_DATA", sj.toString(), Field.Store.NO));
             indexWriter.updateDocument(new Term("_QUERY", query), document);
+            pendingUpdates.incrementAndGet();
         } catch (IOException exc) {
             Logger.logErrorMessage("Unable to index row", exc);
             throw new SQLException("Unable to index row", exc);
@@ -773,6 +833,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         indexLock.readLock().lock();
         try {
             indexWriter.deleteDocuments(new Term("_QUERY", query));
+            pendingUpdates.incrementAndGet();
         } catch (IOException exc) {
             Logger.logErrorMessage("Unable to delete indexed row", exc);
             throw new SQLException("Unable to delete indexed row", exc);
@@ -781,6 +842,28 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         }
     }
 
+    /**
+     * Make the index updates visible to searches and commit them if the commit
+     * interval has expired or too many updates are pending
+     *
+     * @throws  SQLException        Unable to refresh index
+     */
+    private static void refreshIndex() throws SQLException {
+        if (pendingUpdates.get() >= commitUpdates || System.currentTimeMillis() - lastCommitTime >= commitInterval) {
+            commitIndex();
+            return;
+        }
+        indexLock.readLock().lock();
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException exc) {
+            Logger.logErrorMessage("Unable to refresh Lucene index searcher", exc);
+            throw new SQLException("Unable to refresh Lucene index searcher", exc);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
     /**
      * Commit the index updates
      *
@@ -790,12 +873,9 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         indexLock.writeLock().lock();
         try {
             indexWriter.commit();
-            DirectoryReader newReader = DirectoryReader.openIfChanged(indexReader);
-            if (newReader != null) {
-                indexReader.close();
-                indexReader = newReader;
-                indexSearcher = new IndexSearcher(indexReader);
-            }
+            pendingUpdates.set(0);
+            lastCommitTime = System.currentTimeMillis();
+            searcherManager.maybeRefreshBlocking();
         } catch (IOException exc) {
             Logger.logErrorMessage("Unable to commit Lucene index updates", exc);
             throw new SQLException("Unable to commit Lucene index updates", exc);
@@ -857,15 +937,23 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
                         directory = FSDirectory.open(indexPath);
                     }
                     if (indexWriter == null) {
+                        commitInterval = Nxt.getIntProperty("nxt.fullTextCommitInterval") * 1000L;
+                        commitUpdates = Nxt.getIntProperty("nxt.fullTextCommitUpdates");
                         IndexWriterConfig config = new IndexWriterConfig(analyzer);
                         config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
                         indexWriter = new IndexWriter(directory, config);
+                        if ("true".equals(indexWriter.getCommitData().get("dirty"))) {
+                            Logger.logWarningMessage("Lucene index was not closed properly and will be rebuilt");
+                            recoveryNeeded = true;
+                        }
                         Document document = new Document();
                         document.add(new StringField("_QUERY", "_CONTROL_DOCUMENT_", Field.Store.YES));
                         indexWriter.updateDocument(new Term("_QUERY", "_CONTROL_DOCUMENT_"), document);
+                        indexWriter.setCommitData(Collections.singletonMap("dirty", "true"));
                         indexWriter.commit();
-                        indexReader = DirectoryReader.open(directory);
-                        indexSearcher = new IndexSearcher(indexReader);
+                        pendingUpdates.set(0);
+                        lastCommitTime = System.currentTimeMillis();
+                        searcherManager = new SearcherManager(indexWriter, true, null);
                     }
                 } finally {
                     indexLock.writeLock().unlock();
@@ -887,14 +975,13 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     private static void removeIndexAccess() {
         indexLock.writeLock().lock();
         try {
-            if (indexSearcher != null) {
-                indexSearcher = null;
-            }
-            if (indexReader != null) {
-                indexReader.close();
-                indexReader = null;
+            if (searcherManager != null) {
+                searcherManager.close();
+                searcherManager = null;
             }
             if (indexWriter != null) {
+                indexWriter.setCommitData(Collections.singletonMap("dirty", "false"));
+                indexWriter.commit();
                 indexWriter.close();
                 indexWriter = null;
             }
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The H2 {@link JdbcConnectionPool}, selected with nxt.dbConnectionPool=h2.
+ */
+final class H2ConnectionPool implements ConnectionPool {
+
+    private final String name;
+    private final JdbcConnectionPool cp;
+
+    H2ConnectionPool(String name, String dbUrl, String dbUsername, String dbPassword, int maxConnections, int loginTimeout) {
+        this.name = name;
+        this.cp = JdbcConnectionPool.create(dbUrl, dbUsername, dbPassword);
+        cp.setMaxConnections(maxConnections);
+        cp.setLoginTimeout(loginTimeout);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return cp.getConnection();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return cp.getMaxConnections();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return cp.getActiveConnections();
+    }
+
+    @Override
+    public void dispose() {
+        cp.dispose();
+    }
+
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import nxt.util.Logger;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds statements which scan whole tables, or which use an index covering only some of their equality conditions,
+ * by running EXPLAIN on their templates, and suggests an index for each such table.  The suggested index has the columns compared for equality to a parameter or constant first,
+ * followed by the first column compared by range.  Comparisons to TRUE or FALSE are not indexed.
+ * <p>
+ * Suggested indexes are named with an advisor_ prefix so that they can be told apart from the indexes created by
+ * the versioned schema updates.  Indexes found useful should be moved to a schema update, getSchemaUpdate renders
+ * them as the cases to paste into NxtDbVersion.
+ */
+public final class IndexAdvisor {
+
+    private static final Pattern TABLE_FILTER = Pattern.compile(
+            "(\\w+)\\.(\"?\\w+\"?)(?:\\s+(\"?\\w+\"?))?\\s*/\\*\\s*\\1\\.(?:\\2\\.tableScan\\s*|(\"?\\w+\"?):([^*]*))\\*/");
+
+    private static final Pattern COMPARISON = Pattern.compile(
+            "(?:(\"?\\w+\"?)\\.)?(\"?\\w+\"?)\\s*(=|>=|<=|>|<)\\s*(\\?\\d*|-?\\d+|'[^']*'|\"?\\w+\"?(?:\\.\"?\\w+\"?)?)");
+
+    private static final Pattern CONSTANT = Pattern.compile("\\?\\d*|-?\\d+|'[^']*'");
+
+    public static final class Advice {
+
+        private final String sql;
+        private final String table;
+        private final String index;
+        private final long rows;
+        private final List<String> columns;
+        private final String ddl;
+
+        private Advice(String sql, String table, String index, long rows, List<String> columns) {
+            this.sql = sql;
+            this.table = table;
+            this.index = index;
+            this.rows = rows;
+            this.columns = Collections.unmodifiableList(columns);
+            this.ddl = columns.isEmpty() ? null : "CREATE INDEX IF NOT EXISTS " + indexName(table, columns)
+                    + " ON " + table + " (" + String.join(", ", columns) + ")";
+        }
+
+        /** The statement template */
+        public String getSql() {
+            return sql;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /** The index used by the statement, null for a full table scan */
+        public String getIndex() {
+            return index;
+        }
+
+        /** Estimated number of rows in the scanned table */
+        public long getRows() {
+            return rows;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /** The statement creating the suggested index, null if no column of the table is usable */
+        public String getDdl() {
+            return ddl;
+        }
+
+    }
+
+    /**
+     * Explain the statement templates and report those scanning, or filtering the rows returned by a partially
+     * matching index, of a table with at least minRows rows.  Statements
+     * other than SELECT, UPDATE and DELETE are ignored, as are statements which fail to prepare.
+     *
+     * @param   db              Database
+     * @param   statements      Statement templates, bind parameters are explained as NULL
+     * @param   minRows         Minimum estimated row count of a scanned table
+     * @return                  Table scans and partially matching indexes found
+     */
+    public static List<Advice> analyze(BasicDb db, Collection<String> statements, long minRows) {
+        List<Advice> result = new ArrayList<>();
+        Map<String, Long> rowCounts = new HashMap<>();
+        try (Connection con = db.getPooledConnection()) {
+            for (String sql : statements) {
+                String type = sql.trim().toUpperCase(Locale.ROOT);
+                if (!type.startsWith("SELECT") && !type.startsWith("UPDATE") && !type.startsWith("DELETE")) {
+                    continue;
+                }
+                String plan;
+                try {
+                    plan = explain(con, sql);
+                } catch (SQLException e) {
+                    Logger.logDebugMessage("Unable to explain " + sql + ": " + e.toString());
+                    continue;
+                }
+                Matcher filter = TABLE_FILTER.matcher(plan);
+                while (filter.find()) {
+                    String schema = filter.group(1);
+                    String table = filter.group(2);
+                    String alias = filter.group(3) != null ? filter.group(3) : table;
+                    String index = filter.group(4);
+                    Long rows = rowCounts.get(schema + "." + table);
+                    if (rows == null) {
+                        rows = getRowCount(con, schema, unquote(table));
+                        rowCounts.put(schema + "." + table, rows);
+                    }
+                    if (rows < minRows) {
+                        continue;
+                    }
+                    List<String> columns = getIndexColumns(con, plan, schema, table, alias);
+                    if (index != null) {
+                        Set<String> indexColumns = new HashSet<>();
+                        Matcher condition = COMPARISON.matcher(filter.group(5));
+                        while (condition.find()) {
+                            indexColumns.add(unquote(condition.group(2)).toLowerCase(Locale.ROOT));
+                        }
+                        boolean covered = true;
+                        for (String column : columns) {
+                            covered &= indexColumns.contains(unquote(column).toLowerCase(Locale.ROOT));
+                        }
+                        if (covered) {
+                            continue;
+                        }
+                        index = index.toLowerCase(Locale.ROOT);
+                    }
+                    result.add(new Advice(sql, table.toLowerCase(Locale.ROOT), index, rows, columns));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Create the suggested indexes.  DDL commits the current transaction of its connection, the caller must hold
+     * the blockchain write lock so that no block is being pushed or popped meanwhile.  Indexes created this way are
+     * not part of the schema, they are logged as a schema update to be added to NxtDbVersion.
+     *
+     * @param   db              Database
+     * @param   advice          Advice returned by analyze
+     * @return                  Statements executed
+     */
+    public static List<String> apply(BasicDb db, List<Advice> advice) {
+        List<String> ddls = getDdls(advice);
+        if (ddls.isEmpty()) {
+            return ddls;
+        }
+        try (Connection con = db.getPooledConnection();
+             Statement stmt = con.createStatement()) {
+            for (String ddl : ddls) {
+                Logger.logMessage("Creating index: " + ddl);
+                stmt.executeUpdate(ddl);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        Logger.logMessage("Indexes created outside of the schema updates, add them to NxtDbVersion:\n"
+                + getSchemaUpdate(db, advice));
+        return ddls;
+    }
+
+    /**
+     * Render the suggested indexes as schema update cases numbered from the next update of the database, to replace
+     * the final case of NxtDbVersion.update
+     *
+     * @param   db              Database
+     * @param   advice          Advice returned by analyze
+     * @return                  Schema update cases, null if no index is suggested
+     */
+    public static String getSchemaUpdate(BasicDb db, List<Advice> advice) {
+        List<String> ddls = getDdls(advice);
+        if (ddls.isEmpty()) {
+            return null;
+        }
+        int nextUpdate;
+        try (Connection con = db.getPooledConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT next_update FROM version")) {
+            if (!rs.next()) {
+                throw new RuntimeException("Invalid version table");
+            }
+            nextUpdate = rs.getInt(1);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String ddl : ddls) {
+            sb.append("            case ").append(nextUpdate++).append(":\n");
+            sb.append("                apply(\"").append(ddl.replace("\"", "\\\"")).append("\");\n");
+        }
+        sb.append("            case ").append(nextUpdate).append(":\n");
+        sb.append("                return;\n");
+        return sb.toString();
+    }
+
+    private static List<String> getDdls(List<Advice> advice) {
+        Set<String> ddls = new LinkedHashSet<>();
+        for (Advice entry : advice) {
+            if (entry.getDdl() != null) {
+                ddls.add(entry.getDdl());
+            }
+        }
+        return new ArrayList<>(ddls);
+    }
+
+    private static String explain(Connection con, String sql) throws SQLException {
+        try (PreparedStatement pstmt = con.prepareStatement("EXPLAIN " + sql)) {
+            ParameterMetaData metaData = pstmt.getParameterMetaData();
+            for (int i = 1; i <= metaData.getParameterCount(); i++) {
+                pstmt.setNull(i, Types.NULL);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : "";
+            }
+        }
+    }
+
+    private static long getRowCount(Connection con, String schema, String table) throws SQLException {
+        try (PreparedStatement pstmt = con.prepareStatement("SELECT row_count_estimate FROM information_schema.tables "
+                + "WHERE table_schema = ? AND table_name = ?")) {
+            pstmt.setString(1, schema);
+            pstmt.setString(2, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static List<String> getIndexColumns(Connection con, String plan, String schema, String table, String alias)
+            throws SQLException {
+        Set<String> tableColumns = new LinkedHashSet<>();
+        try (ResultSet rs = con.getMetaData().getColumns(null, schema, unquote(table), null)) {
+            while (rs.next()) {
+                tableColumns.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        // skip the select list and the assignments of an update
+        int start = plan.startsWith("SELECT") ? plan.indexOf("\nFROM") : plan.indexOf("\nWHERE");
+        if (start < 0) {
+            return Collections.emptyList();
+        }
+        Set<String> equalityColumns = new LinkedHashSet<>();
+        String rangeColumn = null;
+        Matcher matcher = COMPARISON.matcher(plan.substring(start));
+        while (matcher.find()) {
+            String qualifier = matcher.group(1);
+            String column = matcher.group(2);
+            String operator = matcher.group(3);
+            String value = matcher.group(4);
+            if (qualifier != null && !qualifier.equals(alias)) {
+                continue;
+            }
+            if (!tableColumns.contains(unquote(column)) || !CONSTANT.matcher(value).matches()) {
+                continue;
+            }
+            if ("=".equals(operator)) {
+                equalityColumns.add(column);
+            } else if (rangeColumn == null) {
+                rangeColumn = column;
+            }
+        }
+        List<String> columns = new ArrayList<>(equalityColumns);
+        if (rangeColumn != null && !equalityColumns.contains(rangeColumn)) {
+            columns.add(rangeColumn);
+        }
+        List<String> result = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            result.add(column.startsWith("\"") ? column : column.toLowerCase(Locale.ROOT));
+        }
+        return result;
+    }
+
+    private static String indexName(String table, List<String> columns) {
+        StringBuilder sb = new StringBuilder("advisor_").append(unquote(table));
+        for (String column : columns) {
+            sb.append('_').append(unquote(column));
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static String unquote(String identifier) {
+        return identifier.startsWith("\"") ? identifier.substring(1, identifier.length() - 1) : identifier;
+    }
+
+    private IndexAdvisor() {}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive long keys, using open addressing with linear probing, so that neither the keys nor the
+ * entries are allocated as objects.  Null values are not stored, putting null removes the key.  Not thread safe.
+ */
+final class LongKeyMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private Object[] values = new Object[MIN_CAPACITY];
+    private int mask = MIN_CAPACITY - 1;
+    private int size;
+
+    V get(long key) {
+        int i = hash(key) & mask;
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    V put(long key, V value) {
+        if (value == null) {
+            return remove(key);
+        }
+        int i = hash(key) & mask;
+        Object old;
+        while ((old = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > values.length - (values.length >> 2)) {
+            resize(values.length << 1);
+        }
+        return null;
+    }
+
+    V remove(long key) {
+        int i = hash(key) & mask;
+        Object old;
+        while ((old = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = null;
+                size -= 1;
+                shiftBack(i);
+                return (V) old;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    // move the entries following a freed slot back, so that lookups don't stop at it
+    private void shiftBack(int free) {
+        int i = free;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                return;
+            }
+            int home = hash(keys[i]) & mask;
+            if (free <= i ? (home <= free || home > i) : (home <= free && home > i)) {
+                keys[free] = keys[i];
+                values[free] = values[i];
+                values[i] = null;
+                free = i;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            Object value = oldValues[j];
+            if (value != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = value;
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
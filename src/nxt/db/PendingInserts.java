@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-behind buffer for the rows inserted into a table in the current database transaction.
+ *
+ * The statements prepared by the table save method are bound immediately, but only added to a JDBC batch.  The
+ * batches are executed, in the order the statements were first prepared, before the transaction is committed and
+ * before any other statement referring to the table is executed on the transaction connection.  A key can only be
+ * pending once, so the relative order of the statements for different keys does not matter.
+ */
+final class PendingInserts extends FilteredConnection implements TransactionalDb.PendingWriter {
+
+    private static final FilteredFactory unsupportedFactory = new FilteredFactory() {
+        @Override
+        public Statement createStatement(Statement stmt) {
+            throw new UnsupportedOperationException("Only prepared statements can be batched");
+        }
+
+        @Override
+        public PreparedStatement createPreparedStatement(PreparedStatement stmt, String sql) {
+            throw new UnsupportedOperationException("Only prepareStatement(String) can be batched");
+        }
+    };
+
+    private final Connection con;
+    private final Map<String, BatchedStatement> statements = new LinkedHashMap<>();
+    private final Set<DbKey> dbKeys = new HashSet<>();
+
+    PendingInserts(Connection con) {
+        super(con, unsupportedFactory);
+        this.con = con;
+    }
+
+    boolean contains(DbKey dbKey) {
+        return dbKeys.contains(dbKey);
+    }
+
+    void add(DbKey dbKey) {
+        dbKeys.add(dbKey);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        BatchedStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = new BatchedStatement(con.prepareStatement(sql), sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        try {
+            for (BatchedStatement stmt : statements.values()) {
+                stmt.executePending();
+            }
+        } finally {
+            discard();
+        }
+    }
+
+    @Override
+    public void discard() {
+        for (BatchedStatement stmt : statements.values()) {
+            DbUtils.close(stmt.getStatement());
+        }
+        statements.clear();
+        dbKeys.clear();
+    }
+
+    @Override
+    public void close() {
+        // the batches are executed and closed by flush
+    }
+
+    private static final class BatchedStatement extends FilteredPreparedStatement {
+
+        private final PreparedStatement stmt;
+
+        private BatchedStatement(PreparedStatement stmt, String sql) {
+            super(stmt, sql);
+            this.stmt = stmt;
+        }
+
+        private PreparedStatement getStatement() {
+            return stmt;
+        }
+
+        @Override
+        public int executeUpdate() throws SQLException {
+            stmt.addBatch();
+            return 1;
+        }
+
+        @Override
+        public boolean execute() throws SQLException {
+            stmt.addBatch();
+            return false;
+        }
+
+        @Override
+        public ResultSet executeQuery() throws SQLException {
+            throw new UnsupportedOperationException("Queries can not be batched: " + getSQL());
+        }
+
+        @Override
+        public void close() {
+            // kept open until the batch is executed
+        }
+
+        private void executePending() throws SQLException {
+            stmt.executeBatch();
+        }
+    }
+
+}
@@ -44,6 +44,11 @@ public abstract class PrunableDbTable<T> extends PersistentDbTable<T> {
         super.trim(height);
     }
 
+    @Override
+    public final boolean isTrimmedInChunks() {
+        return false;
+    }
+
     protected void prune() {
         if (Constants.ENABLE_PRUNING) {
             try (Connection con = db.getConnection();
@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+
+package nxt.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution statistics per SQL statement text and for database transactions.  Statements using bind parameters
+ * share the statistics of their template.  Times are recorded in a histogram with four buckets per power of two
+ * microseconds, so percentiles are accurate to about 20%.
+ */
+public final class SqlStatistics {
+
+    /** Statements beyond this many distinct ones are recorded together as OTHER */
+    private static final int MAX_ENTRIES = 2000;
+
+    private static final int BUCKETS = 256;
+
+    public static final class Entry {
+
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private Entry(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * @param   nanos           Execution time in nanoseconds
+         * @param   rows            Number of rows returned or updated
+         */
+        public void add(long nanos, long rows) {
+            long micros = nanos / 1000;
+            count.increment();
+            totalTime.add(micros);
+            maxTime.accumulate(micros);
+            if (rows > 0) {
+                this.rows.add(rows);
+            }
+            histogram.incrementAndGet(bucket(micros));
+        }
+
+        /**
+         * Add rows read after the statement has been executed
+         */
+        public void addRows(long rows) {
+            this.rows.add(rows);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return total time in microseconds
+         */
+        public long getTotalTime() {
+            return totalTime.sum();
+        }
+
+        public long getMeanTime() {
+            long count = getCount();
+            return count == 0 ? 0 : getTotalTime() / count;
+        }
+
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * @param   percentile      Percentile, e.g. 99
+         * @return                  Upper bound of the time in microseconds of the given percentile of the executions
+         */
+        public long getPercentileTime(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBound(i), getMaxTime());
+                }
+            }
+            return 0;
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        return Math.min(4 * (exponent - 1) + (int) ((micros >> (exponent - 2)) & 3), BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = bucket / 4 + 1;
+        return ((4L + bucket % 4 + 1) << (exponent - 2)) - 1;
+    }
+
+    private volatile ConcurrentHashMap<String, Entry> statements = new ConcurrentHashMap<>();
+    private volatile Entry other = new Entry("OTHER");
+    private volatile Entry transactions = new Entry("TRANSACTION");
+    private volatile long startTime = System.currentTimeMillis();
+
+    SqlStatistics() {
+    }
+
+    /**
+     * Get the statistics entry of a statement, the entry can be kept with the prepared statement
+     */
+    Entry getEntry(String sql) {
+        ConcurrentHashMap<String, Entry> statements = this.statements;
+        Entry entry = statements.get(sql);
+        if (entry == null) {
+            if (statements.size() >= MAX_ENTRIES) {
+                return other;
+            }
+            entry = statements.computeIfAbsent(sql, Entry::new);
+        }
+        return entry;
+    }
+
+    public List<Entry> getStatements() {
+        List<Entry> entries = new ArrayList<>(statements.values());
+        if (other.getCount() > 0) {
+            entries.add(other);
+        }
+        return entries;
+    }
+
+    public Entry getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * @return time the statistics were last reset
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Discard the statistics collected so far.  Statements still hold the previous entries until they are prepared
+     * again, which with the statement cache is at the latest when their transaction ends.
+     */
+    public void reset() {
+        statements = new ConcurrentHashMap<>();
+        other = new Entry("OTHER");
+        transactions = new Entry("TRANSACTION");
+        startTime = System.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Entities of one table cached during a database transaction.  Single long keys are kept in a {@link LongKeyMap}
+ * so that they can also be looked up by the id alone, without creating a {@link DbKey}.
+ */
+final class TableCache {
+
+    private final LongKeyMap<Object> longKeys = new LongKeyMap<>();
+    private final Map<DbKey, Object> otherKeys = new HashMap<>();
+
+    Object get(DbKey dbKey) {
+        if (dbKey instanceof DbKey.LongKey) {
+            return longKeys.get(((DbKey.LongKey) dbKey).getId());
+        }
+        return otherKeys.get(dbKey);
+    }
+
+    Object get(long id) {
+        return longKeys.get(id);
+    }
+
+    void put(DbKey dbKey, Object value) {
+        if (dbKey instanceof DbKey.LongKey) {
+            longKeys.put(((DbKey.LongKey) dbKey).getId(), value);
+        } else {
+            otherKeys.put(dbKey, value);
+        }
+    }
+
+    void remove(DbKey dbKey) {
+        if (dbKey instanceof DbKey.LongKey) {
+            longKeys.remove(((DbKey.LongKey) dbKey).getId());
+        } else {
+            otherKeys.remove(dbKey);
+        }
+    }
+
+    void clear() {
+        longKeys.clear();
+        otherKeys.clear();
+    }
+
+}
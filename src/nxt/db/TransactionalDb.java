@@ -26,12 +26,15 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 public class TransactionalDb extends BasicDb {
 
-    private static final DbFactory factory = new DbFactory();
     private static final long stmtThreshold;
     private static final long txThreshold;
     private static final long txInterval;
@@ -43,14 +46,27 @@ public class TransactionalDb extends BasicDb {
     }
 
     private final ThreadLocal<DbConnection> localConnection = new ThreadLocal<>();
-    private final ThreadLocal<Map<String,Map<DbKey,Object>>> transactionCaches = new ThreadLocal<>();
+    private final ThreadLocal<Map<String,TableCache>> transactionCaches = new ThreadLocal<>();
     private final ThreadLocal<Set<TransactionCallback>> transactionCallback = new ThreadLocal<>();
+    private final ThreadLocal<Integer> snapshotHeight = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> snapshotRead = new ThreadLocal<>();
     private volatile long txTimes = 0;
     private volatile long txCount = 0;
     private volatile long statsTime = 0;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final SqlStatistics sqlStatistics = new SqlStatistics();
+    private final CommitExecutor commitExecutor;
 
     public TransactionalDb(DbProperties dbProperties) {
         super(dbProperties);
+        commitExecutor = new CommitExecutor(commitQueueSize);
+    }
+
+    @Override
+    public void shutdown() {
+        commitExecutor.shutdown();
+        super.shutdown();
     }
 
     @Override
@@ -66,15 +82,55 @@ public class TransactionalDb extends BasicDb {
         return localConnection.get() != null;
     }
 
+    /**
+     * Make the table reads of the current thread outside of a database transaction return the rows as of the
+     * given height, even if more blocks are applied before {@link #endSnapshot()} is called.
+     * See {@link EntityDbTable} for the reads which support it.
+     */
+    public void beginSnapshot(int height) {
+        if (snapshotHeight.get() != null) {
+            throw new IllegalStateException("Snapshot already in progress");
+        }
+        snapshotHeight.set(height);
+    }
+
+    public void endSnapshot() {
+        snapshotHeight.remove();
+        snapshotRead.remove();
+    }
+
+    /**
+     * @return true if a table read of the current thread has been served from its snapshot since
+     * {@link #beginSnapshot(int)}, blocks and transactions for example are always read at the latest height
+     */
+    public boolean isSnapshotRead() {
+        return snapshotRead.get() != null;
+    }
+
+    /**
+     * To be called by the reads which support snapshots only, as the snapshot is then marked as read.
+     *
+     * @return the height of the snapshot of the current thread, -1 if none or in a database transaction
+     */
+    public int getSnapshotHeight() {
+        Integer height = snapshotHeight.get();
+        if (height == null || localConnection.get() != null) {
+            return -1;
+        }
+        snapshotRead.set(Boolean.TRUE);
+        return height;
+    }
+
     public Connection beginTransaction() {
         if (localConnection.get() != null) {
             throw new IllegalStateException("Transaction already in progress");
         }
         try {
-            Connection con = getPooledConnection();
+            Connection con = getTransactionConnection();
             con.setAutoCommit(false);
             con = new DbConnection(con);
-            ((DbConnection)con).txStart = System.currentTimeMillis();
+            ((DbConnection)con).txStart = System.nanoTime();
+            ((DbConnection)con).enableStatementCache();
             localConnection.set((DbConnection)con);
             transactionCaches.set(new HashMap<>());
             return con;
@@ -89,6 +145,7 @@ public class TransactionalDb extends BasicDb {
             throw new IllegalStateException("Not in transaction");
         }
         try {
+            con.flushPendingWriters(null);
             con.doCommit();
             Set<TransactionCallback> callbacks = transactionCallback.get();
             if (callbacks != null) {
@@ -106,6 +163,7 @@ public class TransactionalDb extends BasicDb {
             throw new IllegalStateException("Not in transaction");
         }
         try {
+            con.discardPendingWriters();
             con.doRollback();
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
@@ -126,8 +184,14 @@ public class TransactionalDb extends BasicDb {
         }
         localConnection.set(null);
         transactionCaches.set(null);
+        ((DbConnection)con).discardPendingWriters();
+        ((DbConnection)con).closeStatementCache();
         long now = System.currentTimeMillis();
-        long elapsed = now - ((DbConnection)con).txStart;
+        long nanos = System.nanoTime() - ((DbConnection)con).txStart;
+        long elapsed = nanos / 1000000;
+        if (collectStatistics) {
+            sqlStatistics.getTransactions().add(nanos, 0);
+        }
         if (elapsed >= txThreshold) {
             logThreshold(String.format("Database transaction required %.3f seconds at height %d",
                                        (double)elapsed/1000.0, Nxt.getBlockchain().getHeight()));
@@ -151,6 +215,25 @@ public class TransactionalDb extends BasicDb {
         DbUtils.close(con);
     }
 
+    /**
+     * Run the asynchronous phase of a commit callback.  The tasks run one at a time in the order they are
+     * submitted, after the committing thread has released its locks.  Blocks while the commit queue is full.
+     */
+    public void submitCommitTask(Runnable task) {
+        commitExecutor.submit(task);
+    }
+
+    /**
+     * Wait until the commit tasks submitted so far have completed
+     */
+    public void awaitCommitTasks() {
+        commitExecutor.await();
+    }
+
+    public CommitExecutor getCommitExecutor() {
+        return commitExecutor;
+    }
+
     public void registerCallback(TransactionCallback callback) {
         Set<TransactionCallback> callbacks = transactionCallback.get();
         if (callbacks == null) {
@@ -160,27 +243,90 @@ public class TransactionalDb extends BasicDb {
         callbacks.add(callback);
     }
 
-    Map<DbKey,Object> getCache(String tableName) {
+    TableCache getCache(String tableName) {
         if (!isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
         }
-        Map<DbKey,Object> cacheMap = transactionCaches.get().get(tableName);
+        TableCache cacheMap = transactionCaches.get().get(tableName);
         if (cacheMap == null) {
-            cacheMap = new HashMap<>();
+            cacheMap = new TableCache();
             transactionCaches.get().put(tableName, cacheMap);
         }
         return cacheMap;
     }
 
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * @return the statement and transaction statistics, null unless enabled with nxt.dbStatistics
+     */
+    public SqlStatistics getSqlStatistics() {
+        return collectStatistics ? sqlStatistics : null;
+    }
+
+    <W extends PendingWriter> W getPendingWriter(String tableName, Function<Connection, W> factory) {
+        DbConnection con = localConnection.get();
+        if (con == null) {
+            throw new IllegalStateException("Not in transaction");
+        }
+        @SuppressWarnings("unchecked")
+        W writer = (W) con.pendingWriters.get(tableName);
+        if (writer == null) {
+            writer = factory.apply(con);
+            con.pendingWriters.put(tableName, writer);
+        }
+        return writer;
+    }
+
+    void flushPendingWriter(String tableName) throws SQLException {
+        DbConnection con = localConnection.get();
+        if (con == null) {
+            throw new IllegalStateException("Not in transaction");
+        }
+        PendingWriter writer = con.pendingWriters.remove(tableName);
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Check if the SQL statement refers to the table, ignoring longer names containing it (e.g. account_asset)
+     */
+    static boolean refersTo(String sql, String tableName) {
+        int index = 0;
+        while ((index = sql.indexOf(tableName, index)) >= 0) {
+            int end = index + tableName.length();
+            if ((index == 0 || !isNameChar(sql.charAt(index - 1))) && (end == sql.length() || !isNameChar(sql.charAt(end)))) {
+                return true;
+            }
+            index = end;
+        }
+        return false;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
     void clearCache(String tableName) {
-        Map<DbKey,Object> cacheMap = transactionCaches.get().get(tableName);
+        TableCache cacheMap = transactionCaches.get().get(tableName);
         if (cacheMap != null) {
             cacheMap.clear();
         }
     }
 
     public void clearCache() {
-        transactionCaches.get().values().forEach(Map::clear);
+        transactionCaches.get().values().forEach(TableCache::clear);
     }
 
     private static void logThreshold(String msg) {
@@ -204,9 +350,90 @@ public class TransactionalDb extends BasicDb {
     private final class DbConnection extends FilteredConnection {
 
         long txStart = 0;
+        private final Map<String, PendingWriter> pendingWriters = new LinkedHashMap<>();
+        private Map<String, DbPreparedStatement> statementCache;
 
         private DbConnection(Connection con) {
+            this(con, new DbFactory());
+        }
+
+        private DbConnection(Connection con, DbFactory factory) {
             super(con, factory);
+            factory.con = this;
+        }
+
+        /**
+         * Execute the pending writes of the tables the SQL statement refers to, or all of them if sql is null
+         */
+        private void flushPendingWriters(String sql) throws SQLException {
+            if (pendingWriters.isEmpty()) {
+                return;
+            }
+            String lowerCaseSql = sql == null ? null : sql.toLowerCase();
+            Iterator<Map.Entry<String, PendingWriter>> iterator = pendingWriters.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, PendingWriter> entry = iterator.next();
+                if (lowerCaseSql == null || refersTo(lowerCaseSql, entry.getKey())) {
+                    iterator.remove();
+                    entry.getValue().flush();
+                }
+            }
+        }
+
+        private SqlStatistics.Entry getStatisticsEntry(String sql) {
+            return collectStatistics ? sqlStatistics.getEntry(sql) : null;
+        }
+
+        private void discardPendingWriters() {
+            pendingWriters.values().forEach(PendingWriter::discard);
+            pendingWriters.clear();
+        }
+
+        /**
+         * Transaction connections keep the most recently used prepared statements open, a closed statement is
+         * returned to the cache and handed out again for the same SQL
+         */
+        private void enableStatementCache() {
+            if (statementCacheSize > 0) {
+                statementCache = new LinkedHashMap<String, DbPreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, DbPreparedStatement> eldest) {
+                        if (size() > statementCacheSize) {
+                            eldest.getValue().evict();
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+            }
+        }
+
+        private void closeStatementCache() {
+            if (statementCache != null) {
+                statementCache.values().forEach(DbPreparedStatement::evict);
+                statementCache = null;
+            }
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            if (statementCache == null) {
+                return super.prepareStatement(sql);
+            }
+            DbPreparedStatement stmt = statementCache.get(sql);
+            if (stmt != null && !stmt.inUse) {
+                statementCacheHits.incrementAndGet();
+                stmt.inUse = true;
+                return stmt;
+            }
+            statementCacheMisses.incrementAndGet();
+            DbPreparedStatement newStmt = (DbPreparedStatement) super.prepareStatement(sql);
+            if (stmt == null) {
+                newStmt.cached = true;
+                newStmt.inUse = true;
+                statementCache.put(sql, newStmt);
+            }
+            return newStmt;
         }
 
         @Override
@@ -256,96 +483,232 @@ public class TransactionalDb extends BasicDb {
 
     private static final class DbStatement extends FilteredStatement {
 
-        private DbStatement(Statement stmt) {
+        private final DbConnection con;
+
+        private DbStatement(Statement stmt, DbConnection con) {
             super(stmt);
+            this.con = con;
         }
 
         @Override
         public boolean execute(String sql) throws SQLException {
-            long start = System.currentTimeMillis();
+            con.flushPendingWriters(sql);
+            long start = System.nanoTime();
             boolean b = super.execute(sql);
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), sql));
+            SqlStatistics.Entry entry = con.getStatisticsEntry(sql);
+            if (entry != null) {
+                entry.add(nanos, 0);
+            }
             return b;
         }
 
         @Override
         public ResultSet executeQuery(String sql) throws SQLException {
-            long start = System.currentTimeMillis();
+            con.flushPendingWriters(sql);
+            long start = System.nanoTime();
             ResultSet r = super.executeQuery(sql);
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), sql));
+            SqlStatistics.Entry entry = con.getStatisticsEntry(sql);
+            if (entry != null) {
+                entry.add(nanos, 0);
+                r = new DbResultSet(r, entry);
+            }
             return r;
         }
 
         @Override
         public int executeUpdate(String sql) throws SQLException {
-            long start = System.currentTimeMillis();
+            con.flushPendingWriters(sql);
+            long start = System.nanoTime();
             int c = super.executeUpdate(sql);
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), sql));
+            SqlStatistics.Entry entry = con.getStatisticsEntry(sql);
+            if (entry != null) {
+                entry.add(nanos, c);
+            }
             return c;
         }
     }
 
     private static final class DbPreparedStatement extends FilteredPreparedStatement {
-        private DbPreparedStatement(PreparedStatement stmt, String sql) {
+
+        private final DbConnection con;
+        private boolean cached;
+        private boolean inUse;
+        private SqlStatistics.Entry statisticsEntry;
+
+        private DbPreparedStatement(PreparedStatement stmt, String sql, DbConnection con) {
             super(stmt, sql);
+            this.con = con;
         }
 
         @Override
         public boolean execute() throws SQLException {
-            long start = System.currentTimeMillis();
+            con.flushPendingWriters(getSQL());
+            long start = System.nanoTime();
             boolean b = super.execute();
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), getSQL()));
+            SqlStatistics.Entry entry = getStatisticsEntry();
+            if (entry != null) {
+                entry.add(nanos, 0);
+            }
             return b;
         }
 
         @Override
         public ResultSet executeQuery() throws SQLException {
-            long start = System.currentTimeMillis();
+            con.flushPendingWriters(getSQL());
+            long start = System.nanoTime();
             ResultSet r = super.executeQuery();
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), getSQL()));
+            SqlStatistics.Entry entry = getStatisticsEntry();
+            if (entry != null) {
+                entry.add(nanos, 0);
+                r = new DbResultSet(r, entry);
+            }
             return r;
         }
 
         @Override
         public int executeUpdate() throws SQLException {
-            long start = System.currentTimeMillis();
+            con.flushPendingWriters(getSQL());
+            long start = System.nanoTime();
             int c = super.executeUpdate();
-            long elapsed = System.currentTimeMillis() - start;
+            long nanos = System.nanoTime() - start;
+            long elapsed = nanos / 1000000;
             if (elapsed > stmtThreshold)
                 logThreshold(String.format("SQL statement required %.3f seconds at height %d:\n%s",
                                            (double)elapsed/1000.0, Nxt.getBlockchain().getHeight(), getSQL()));
+            SqlStatistics.Entry entry = getStatisticsEntry();
+            if (entry != null) {
+                entry.add(nanos, c);
+            }
             return c;
         }
+
+        @Override
+        public int[] executeBatch() throws SQLException {
+            long start = System.nanoTime();
+            int[] counts = super.executeBatch();
+            SqlStatistics.Entry entry = getStatisticsEntry();
+            if (entry != null) {
+                long rows = 0;
+                for (int count : counts) {
+                    rows += Math.max(count, 0);
+                }
+                entry.add(System.nanoTime() - start, rows);
+            }
+            return counts;
+        }
+
+        private SqlStatistics.Entry getStatisticsEntry() {
+            if (statisticsEntry == null) {
+                statisticsEntry = con.getStatisticsEntry(getSQL());
+            }
+            return statisticsEntry;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (cached) {
+                inUse = false;
+                clearParameters();
+                clearBatch();
+            } else {
+                super.close();
+            }
+        }
+
+        private void evict() {
+            cached = false;
+            if (!inUse) {
+                DbUtils.close(this);
+            }
+        }
+    }
+
+    private static final class DbResultSet extends FilteredResultSet {
+
+        private final SqlStatistics.Entry entry;
+        private long rows;
+        private boolean closed;
+
+        private DbResultSet(ResultSet rs, SqlStatistics.Entry entry) {
+            super(rs);
+            this.entry = entry;
+        }
+
+        @Override
+        public boolean next() throws SQLException {
+            boolean next = super.next();
+            if (next) {
+                rows++;
+            }
+            return next;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!closed) {
+                closed = true;
+                entry.addRows(rows);
+            }
+            super.close();
+        }
     }
 
     private static final class DbFactory implements FilteredFactory {
 
+        private DbConnection con;
+
         @Override
         public Statement createStatement(Statement stmt) {
-            return new DbStatement(stmt);
+            return new DbStatement(stmt, con);
         }
 
         @Override
         public PreparedStatement createPreparedStatement(PreparedStatement stmt, String sql) {
-            return new DbPreparedStatement(stmt, sql);
+            return new DbPreparedStatement(stmt, sql, con);
         }
     }
 
+    /**
+     * Writes deferred until the transaction is committed, or until a statement refers to their table
+     */
+    interface PendingWriter {
+
+        /**
+         * Execute the pending writes
+         */
+        void flush() throws SQLException;
+
+        /**
+         * Drop the pending writes, the transaction is rolled back
+         */
+        void discard();
+    }
+
     /**
      * Transaction callback interface
      */
@@ -353,6 +716,9 @@ public class TransactionalDb extends BasicDb {
 
         /**
          * Transaction has been committed
+         *
+         * This runs on the committing thread, usually while it still holds the blockchain lock.  It should only
+         * collect the work of the transaction and pass anything slow to {@link TransactionalDb#submitCommitTask(Runnable)}.
          */
         void commit();
 
@@ -116,6 +116,11 @@ public abstract class ValuesDbTable<T,V> extends DerivedDbTable {
         }
     }
 
+    @Override
+    public final boolean isTrimmedInChunks() {
+        return multiversion;
+    }
+
     @Override
     public final void trim(int height) {
         if (multiversion) {
@@ -23,11 +23,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
 public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
 
+    private static final int TRIM_CHUNK_SIZE = Math.max(Nxt.getIntProperty("nxt.trimChunkSize", 10000), 1);
+
     protected VersionedEntityDbTable(String table, DbKey.Factory<T> dbKeyFactory) {
         super(table, dbKeyFactory, true, null);
     }
@@ -48,6 +48,7 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
             throw new IllegalStateException("Not in transaction");
         }
         DbKey dbKey = dbKeyFactory.newKey(t);
+        invalidateSharedCache(dbKey);
         try (Connection con = db.getConnection();
              PreparedStatement pstmtCount = con.prepareStatement("SELECT 1 FROM " + table
                      + dbKeyFactory.getPKClause() + " AND height < ? LIMIT 1")) {
@@ -83,39 +84,37 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
         if (!db.isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
         }
+        // Find the version to restore for all keys modified above height in one query, and set them as latest
+        // in a single batch, instead of one correlated UPDATE per key.  This issues fewer statements but was not
+        // measured to be faster with embedded H2, where both took 90-145 ms to roll back 10000 keys
         try (Connection con = db.getConnection();
-             PreparedStatement pstmtSelectToDelete = con.prepareStatement("SELECT DISTINCT " + dbKeyFactory.getPKColumns()
-                     + " FROM " + table + " WHERE height > ?");
+             PreparedStatement pstmtSelectToRestore = con.prepareStatement("SELECT a.*, (SELECT MAX(b.height) FROM "
+                     + table + " AS b WHERE " + dbKeyFactory.getSelfJoinClause() + " AND b.height <= ?) AS max_height"
+                     + " FROM (SELECT DISTINCT " + dbKeyFactory.getPKColumns() + " FROM " + table
+                     + " WHERE height > ?) AS a");
              PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table
                      + " WHERE height > ?");
              PreparedStatement pstmtSetLatest = con.prepareStatement("UPDATE " + table
-                     + " SET latest = TRUE " + dbKeyFactory.getPKClause() + " AND height ="
-                     + " (SELECT MAX(height) FROM " + table + dbKeyFactory.getPKClause() + ")")) {
-            pstmtSelectToDelete.setInt(1, height);
-            List<DbKey> dbKeys = new ArrayList<>();
-            try (ResultSet rs = pstmtSelectToDelete.executeQuery()) {
+                     + " SET latest = TRUE " + dbKeyFactory.getPKClause() + " AND height = ?")) {
+            pstmtSelectToRestore.setInt(1, height);
+            pstmtSelectToRestore.setInt(2, height);
+            int count = 0;
+            try (ResultSet rs = pstmtSelectToRestore.executeQuery()) {
                 while (rs.next()) {
-                    dbKeys.add(dbKeyFactory.newKey(rs));
+                    int maxHeight = rs.getInt("max_height");
+                    if (rs.wasNull()) {
+                        continue; // created above height, nothing to restore
+                    }
+                    int i = dbKeyFactory.newKey(rs).setPK(pstmtSetLatest);
+                    pstmtSetLatest.setInt(i, maxHeight);
+                    pstmtSetLatest.addBatch();
+                    count++;
                 }
             }
-            /*
-            if (dbKeys.size() > 0 && Logger.isDebugEnabled()) {
-                Logger.logDebugMessage(String.format("rollback table %s found %d records to update to latest", table, dbKeys.size()));
-            }
-            */
             pstmtDelete.setInt(1, height);
-            int deletedRecordsCount = pstmtDelete.executeUpdate();
-            /*
-            if (deletedRecordsCount > 0 && Logger.isDebugEnabled()) {
-                Logger.logDebugMessage(String.format("rollback table %s deleting %d records", table, deletedRecordsCount));
-            }
-            */
-            for (DbKey dbKey : dbKeys) {
-                int i = 1;
-                i = dbKey.setPK(pstmtSetLatest, i);
-                i = dbKey.setPK(pstmtSetLatest, i);
-                pstmtSetLatest.executeUpdate();
-                //Db.getCache(table).remove(dbKey);
+            pstmtDelete.executeUpdate();
+            if (count > 0) {
+                pstmtSetLatest.executeBatch();
             }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
@@ -126,27 +125,50 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
         if (!db.isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
         }
+        // Rows are trimmed in db_id ranges, each chunk is committed and the blockchain lock is released in between,
+        // so that block processing is not blocked for the whole table
         try (Connection con = db.getConnection();
-             PreparedStatement pstmtSelect = con.prepareStatement("SELECT " + dbKeyFactory.getPKColumns() + ", MAX(height) AS max_height"
-                     + " FROM " + table + " WHERE height < ? GROUP BY " + dbKeyFactory.getPKColumns() + " HAVING COUNT(DISTINCT height) > 1");
-             PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + dbKeyFactory.getPKClause()
-                     + " AND height < ? AND height >= 0");
-            PreparedStatement pstmtDeleteDeleted = con.prepareStatement("DELETE FROM " + table + " WHERE height < ? AND height >= 0 AND latest = FALSE "
-                    + " AND (" + dbKeyFactory.getPKColumns() + ") NOT IN (SELECT (" + dbKeyFactory.getPKColumns() + ") FROM "
-                    + table + " WHERE height >= ?)")) {
-            pstmtSelect.setInt(1, height);
-            try (ResultSet rs = pstmtSelect.executeQuery()) {
-                while (rs.next()) {
-                    DbKey dbKey = dbKeyFactory.newKey(rs);
-                    int maxHeight = rs.getInt("max_height");
-                    int i = 1;
-                    i = dbKey.setPK(pstmtDelete, i);
-                    pstmtDelete.setInt(i, maxHeight);
-                    pstmtDelete.executeUpdate();
+             PreparedStatement pstmtRange = con.prepareStatement("SELECT MIN(db_id) AS min_db_id, MAX(db_id) AS max_db_id"
+                     + " FROM " + table);
+             PreparedStatement pstmtSelect = con.prepareStatement("SELECT a.db_id FROM " + table + " AS a"
+                     + " WHERE a.db_id >= ? AND a.db_id < ? AND a.height < ? AND a.height >= 0"
+                     + " AND (EXISTS (SELECT 1 FROM " + table + " AS b WHERE " + dbKeyFactory.getSelfJoinClause()
+                     + " AND b.height > a.height AND b.height < ?)"
+                     + " OR (a.latest = FALSE AND NOT EXISTS (SELECT 1 FROM " + table + " AS b WHERE "
+                     + dbKeyFactory.getSelfJoinClause() + " AND b.height >= ?)))");
+             PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + " WHERE db_id = ?")) {
+            long minDbId, maxDbId;
+            try (ResultSet rs = pstmtRange.executeQuery()) {
+                rs.next();
+                minDbId = rs.getLong("min_db_id");
+                maxDbId = rs.getLong("max_db_id");
+                if (rs.wasNull()) {
+                    return;
+                }
+            }
+            for (long fromDbId = minDbId; fromDbId <= maxDbId; fromDbId += TRIM_CHUNK_SIZE) {
+                Nxt.getBlockchain().readLock();
+                try {
+                    pstmtSelect.setLong(1, fromDbId);
+                    pstmtSelect.setLong(2, fromDbId + TRIM_CHUNK_SIZE);
+                    pstmtSelect.setInt(3, height);
+                    pstmtSelect.setInt(4, height);
+                    pstmtSelect.setInt(5, height);
+                    int count = 0;
+                    try (ResultSet rs = pstmtSelect.executeQuery()) {
+                        while (rs.next()) {
+                            pstmtDelete.setLong(1, rs.getLong("db_id"));
+                            pstmtDelete.addBatch();
+                            count++;
+                        }
+                    }
+                    if (count > 0) {
+                        pstmtDelete.executeBatch();
+                    }
+                    db.commitTransaction();
+                } finally {
+                    Nxt.getBlockchain().readUnlock();
                 }
-                pstmtDeleteDeleted.setInt(1, height);
-                pstmtDeleteDeleted.setInt(2, height);
-                pstmtDeleteDeleted.executeUpdate();
             }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
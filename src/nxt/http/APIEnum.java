@@ -140,11 +140,18 @@ public enum APIEnum {
     POP_OFF("popOff", PopOff.instance),
     SCAN("scan", Scan.instance),
     LUCENE_REINDEX("luceneReindex", LuceneReindex.instance),
+    COMPACT_DATABASE("compactDatabase", CompactDatabase.instance),
     ADD_PEER("addPeer", AddPeer.instance),
     BLACKLIST_PEER("blacklistPeer", BlacklistPeer.instance),
     DUMP_PEERS("dumpPeers", DumpPeers.instance),
     GET_LOG("getLog", GetLog.instance),
     GET_STACK_TRACES("getStackTraces", GetStackTraces.instance),
+    GET_DB_STATISTICS("getDbStatistics", GetDbStatistics.instance),
+    GET_SQL_STATISTICS("getSqlStatistics", GetSqlStatistics.instance),
+    RESET_SQL_STATISTICS("resetSqlStatistics", ResetSqlStatistics.instance),
+    GET_INDEX_ADVICE("getIndexAdvice", GetIndexAdvice.instance),
+    APPLY_INDEX_ADVICE("applyIndexAdvice", ApplyIndexAdvice.instance),
+    EXPORT_SNAPSHOT("exportSnapshot", ExportSnapshot.instance),
     RETRIEVE_PRUNED_DATA("retrievePrunedData", RetrievePrunedData.instance),
     RETRIEVE_PRUNED_TRANSACTION("retrievePrunedTransaction", RetrievePrunedTransaction.instance),
     SET_LOGGING("setLogging", SetLogging.instance),
@@ -122,6 +122,7 @@ public final class APIServlet extends HttpServlet {
     }
 
     private static final boolean enforcePost = Nxt.getBooleanProperty("nxt.apiServerEnforcePOST");
+    private static final boolean readSnapshot = Nxt.getBooleanProperty("nxt.apiReadSnapshot");
     static final Map<String,APIRequestHandler> apiRequestHandlers;
     static final Map<String,APIRequestHandler> disabledRequestHandlers;
 
@@ -235,10 +236,16 @@ public final class APIServlet extends HttpServlet {
             if (requireBlockId != 0 || requireLastBlockId != 0) {
                 Nxt.getBlockchain().readLock();
             }
+            // queries which don't require POST are read only and see the tables as of the height they started at
+            final boolean startSnapshot = readSnapshot && !apiRequestHandler.startDbTransaction() && !apiRequestHandler.requirePost();
+            int snapshotHeight = -1;
             try {
                 try {
                     if (apiRequestHandler.startDbTransaction()) {
                         Db.db.beginTransaction();
+                    } else if (startSnapshot) {
+                        snapshotHeight = Nxt.getBlockchain().getHeight();
+                        Db.db.beginSnapshot(snapshotHeight);
                     }
                     if (requireBlockId != 0 && !Nxt.getBlockchain().hasBlock(requireBlockId)) {
                         response = REQUIRED_BLOCK_NOT_FOUND;
@@ -252,9 +259,15 @@ public final class APIServlet extends HttpServlet {
                     if (requireLastBlockId == 0 && requireBlockId != 0 && response instanceof JSONObject) {
                         ((JSONObject) response).put("lastBlock", Nxt.getBlockchain().getLastBlock().getStringId());
                     }
+                    // only the derived entity tables are read from the snapshot, see EntityDbTable
+                    if (startSnapshot && Db.db.isSnapshotRead() && response instanceof JSONObject) {
+                        ((JSONObject) response).put("snapshotHeight", snapshotHeight);
+                    }
                 } finally {
                     if (apiRequestHandler.startDbTransaction()) {
                         Db.db.endTransaction();
+                    } else if (startSnapshot) {
+                        Db.db.endSnapshot();
                     }
                 }
             } finally {
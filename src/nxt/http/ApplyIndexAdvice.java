@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Db;
+import nxt.Nxt;
+import nxt.db.IndexAdvisor;
+import nxt.db.SqlStatistics;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+public final class ApplyIndexAdvice extends APIServlet.APIRequestHandler {
+
+    static final ApplyIndexAdvice instance = new ApplyIndexAdvice();
+
+    private ApplyIndexAdvice() {
+        super(new APITag[] {APITag.DEBUG}, "minRows");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        int minRows = ParameterParser.getInt(req, "minRows", 0, Integer.MAX_VALUE, false);
+        SqlStatistics statistics = Db.db.getSqlStatistics();
+        if (statistics == null) {
+            return GetIndexAdvice.statisticsDisabled();
+        }
+        List<IndexAdvisor.Advice> advice;
+        List<String> created;
+        Nxt.getBlockchain().writeLock();
+        try {
+            advice = GetIndexAdvice.analyze(statistics.getStatements(), minRows);
+            created = IndexAdvisor.apply(Db.db, advice);
+        } finally {
+            Nxt.getBlockchain().writeUnlock();
+        }
+        JSONObject response = new JSONObject();
+        JSONArray indexes = new JSONArray();
+        indexes.addAll(created);
+        response.put("indexes", indexes);
+        if (!created.isEmpty()) {
+            response.put("schemaUpdate", IndexAdvisor.getSchemaUpdate(Db.db, advice));
+        }
+        return response;
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Db;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+public final class CompactDatabase extends APIServlet.APIRequestHandler {
+
+    static final CompactDatabase instance = new CompactDatabase();
+
+    private CompactDatabase() {
+        super(new APITag[] {APITag.DEBUG}, "maxTime");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        int maxTime = ParameterParser.getInt(req, "maxTime", 1, Integer.MAX_VALUE, false);
+        long reduction = Db.db.compact(maxTime > 0 ? maxTime : 60000);
+        JSONObject response = new JSONObject();
+        if (reduction < 0) {
+            response.put("errorCode", 4);
+            response.put("errorDescription", "Online compaction requires an MVStore database, use the CompactDatabase tool instead");
+        } else {
+            response.put("reduction", reduction);
+        }
+        return response;
+    }
+
+    @Override
+    protected final boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
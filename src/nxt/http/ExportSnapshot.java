@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Nxt;
+import nxt.Snapshot;
+import nxt.db.DbSnapshot;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public final class ExportSnapshot extends APIServlet.APIRequestHandler {
+
+    static final ExportSnapshot instance = new ExportSnapshot();
+
+    private ExportSnapshot() {
+        super(new APITag[] {APITag.DEBUG});
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        File dir = new File(Nxt.getUserHomeDir(), "snapshots");
+        JSONObject response = new JSONObject();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            response.put("errorCode", 4);
+            response.put("errorDescription", "Unable to create directory " + dir.getPath());
+            return response;
+        }
+        try {
+            File file = Snapshot.export(dir);
+            DbSnapshot.Header header;
+            try (InputStream in = new FileInputStream(file)) {
+                header = DbSnapshot.readHeader(in);
+            }
+            response.put("file", file.getAbsolutePath());
+            response.put("size", file.length());
+            response.put("height", header.getHeight());
+            response.put("block", Long.toUnsignedString(header.getBlockId()));
+        } catch (IOException e) {
+            response.put("errorCode", 4);
+            response.put("errorDescription", "Unable to export snapshot: " + e.getMessage());
+        }
+        return response;
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
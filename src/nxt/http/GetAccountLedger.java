@@ -21,6 +21,7 @@ import nxt.AccountLedger.LedgerEntry;
 import nxt.AccountLedger.LedgerEvent;
 import nxt.AccountLedger.LedgerHolding;
 import nxt.NxtException;
+import nxt.db.DbCursor;
 import nxt.util.Convert;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -105,6 +106,12 @@ import java.util.List;
  *           unless the administrator password is specified.
  *       </td>
  *     </tr>
+ *     <tr>
+ *       <td>cursor</td>
+ *       <td>The 'nextCursor' value returned with the previous page.  The first and last index are then relative
+ *           to the cursor, which is much faster than a large first index when walking through all entries.
+ *       </td>
+ *     </tr>
  *   </tbody>
  * </table>
  * <br>
@@ -228,7 +235,7 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
      * Create the GetAccountLedger instance
      */
     private GetAccountLedger() {
-        super(new APITag[] {APITag.ACCOUNTS}, "account", "firstIndex", "lastIndex",
+        super(new APITag[] {APITag.ACCOUNTS}, "account", "firstIndex", "lastIndex", "cursor",
                 "eventType", "event", "holdingType", "holding", "includeTransactions", "includeHoldingInfo");
     }
 
@@ -247,6 +254,7 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
         long accountId = ParameterParser.getAccountId(req, "account", false);
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
+        DbCursor cursor = ParameterParser.getCursor(req, 1);
         String eventType = Convert.emptyToNull(req.getParameter("eventType"));
         LedgerEvent event = null;
         long eventId = 0;
@@ -276,7 +284,7 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
         // Get the ledger entries
         //
         List<LedgerEntry> ledgerEntries = AccountLedger.getEntries(accountId, event, eventId,
-                                                                   holding, holdingId, firstIndex, lastIndex);
+                                                                   holding, holdingId, cursor, firstIndex, lastIndex);
         //
         // Return the response
         //
@@ -288,6 +296,9 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
         });
         JSONObject response = new JSONObject();
         response.put("entries", responseEntries);
+        if (!ledgerEntries.isEmpty()) {
+            response.put("nextCursor", new DbCursor(ledgerEntries.get(ledgerEntries.size() - 1).getLedgerId()).toString());
+        }
         return response;
     }
 }
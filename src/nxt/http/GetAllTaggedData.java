@@ -18,6 +18,7 @@ package nxt.http;
 
 import nxt.NxtException;
 import nxt.TaggedData;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -30,23 +31,27 @@ public final class GetAllTaggedData extends APIServlet.APIRequestHandler {
     static final GetAllTaggedData instance = new GetAllTaggedData();
 
     private GetAllTaggedData() {
-        super(new APITag[] {APITag.DATA}, "firstIndex", "lastIndex", "includeData");
+        super(new APITag[] {APITag.DATA}, "firstIndex", "lastIndex", "cursor", "includeData");
     }
 
     @Override
     protected JSONStreamAware processRequest(HttpServletRequest req) throws NxtException {
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
+        DbCursor cursor = ParameterParser.getCursor(req, 3);
         boolean includeData = "true".equalsIgnoreCase(req.getParameter("includeData"));
 
         JSONObject response = new JSONObject();
         JSONArray jsonArray = new JSONArray();
         response.put("data", jsonArray);
 
-        try (DbIterator<TaggedData> data = TaggedData.getAll(firstIndex, lastIndex)) {
+        try (DbIterator<TaggedData> data = TaggedData.getAll(cursor, firstIndex, lastIndex)) {
             while (data.hasNext()) {
                 jsonArray.add(JSONData.taggedData(data.next(), includeData));
             }
+            if (data.getCursor() != null) {
+                response.put("nextCursor", data.getCursor().toString());
+            }
         }
         return response;
     }
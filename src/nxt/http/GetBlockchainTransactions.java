@@ -19,6 +19,7 @@ package nxt.http;
 import nxt.Nxt;
 import nxt.NxtException;
 import nxt.Transaction;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -32,7 +33,7 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
 
     private GetBlockchainTransactions() {
         super(new APITag[] {APITag.ACCOUNTS, APITag.TRANSACTIONS}, "account", "timestamp", "type", "subtype",
-                "firstIndex", "lastIndex", "numberOfConfirmations", "withMessage", "phasedOnly", "nonPhasedOnly",
+                "firstIndex", "lastIndex", "cursor", "numberOfConfirmations", "withMessage", "phasedOnly", "nonPhasedOnly",
                 "includeExpiredPrunable", "includePhasingResult", "executedOnly");
     }
 
@@ -64,18 +65,22 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
 
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
+        DbCursor cursor = ParameterParser.getCursor(req, 2);
 
+        JSONObject response = new JSONObject();
         JSONArray transactions = new JSONArray();
         try (DbIterator<? extends Transaction> iterator = Nxt.getBlockchain().getTransactions(accountId, numberOfConfirmations,
-                type, subtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, firstIndex, lastIndex,
+                type, subtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, cursor, firstIndex, lastIndex,
                 includeExpiredPrunable, executedOnly)) {
             while (iterator.hasNext()) {
                 Transaction transaction = iterator.next();
                 transactions.add(JSONData.transaction(transaction, includePhasingResult));
             }
+            if (iterator.getCursor() != null) {
+                response.put("nextCursor", iterator.getCursor().toString());
+            }
         }
 
-        JSONObject response = new JSONObject();
         response.put("transactions", transactions);
         return response;
 
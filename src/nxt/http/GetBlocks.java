@@ -30,6 +30,8 @@ public final class GetBlocks extends APIServlet.APIRequestHandler {
 
     static final GetBlocks instance = new GetBlocks();
 
+    private static final int PREFETCH_SIZE = 10;
+
     private GetBlocks() {
         super(new APITag[] {APITag.BLOCKS}, "firstIndex", "lastIndex", "timestamp", "includeTransactions", "includeExecutedPhased");
     }
@@ -44,7 +46,7 @@ public final class GetBlocks extends APIServlet.APIRequestHandler {
         boolean includeExecutedPhased = "true".equalsIgnoreCase(req.getParameter("includeExecutedPhased"));
 
         JSONArray blocks = new JSONArray();
-        try (DbIterator<? extends Block> iterator = Nxt.getBlockchain().getBlocks(firstIndex, lastIndex)) {
+        try (DbIterator<? extends Block> iterator = Nxt.getBlockchain().getBlocks(firstIndex, lastIndex).prefetch(PREFETCH_SIZE)) {
             while (iterator.hasNext()) {
                 Block block = iterator.next();
                 if (block.getTimestamp() < timestamp) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Db;
+import nxt.Nxt;
+import nxt.db.CommitExecutor;
+import nxt.db.ConnectionPool;
+import nxt.db.DbConnectionPool;
+import nxt.db.DerivedDbTable;
+import nxt.db.EntityCache;
+import nxt.db.EntityDbTable;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+public final class GetDbStatistics extends APIServlet.APIRequestHandler {
+
+    static final GetDbStatistics instance = new GetDbStatistics();
+
+    private GetDbStatistics() {
+        super(new APITag[] {APITag.DEBUG});
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        JSONObject response = new JSONObject();
+        JSONArray entityCaches = new JSONArray();
+        for (DerivedDbTable table : Nxt.getBlockchainProcessor().getDerivedTables()) {
+            if (!(table instanceof EntityDbTable)) {
+                continue;
+            }
+            EntityCache<?> cache = ((EntityDbTable<?>) table).getSharedCache();
+            if (cache == null) {
+                continue;
+            }
+            JSONObject json = new JSONObject();
+            json.put("table", cache.getTable());
+            json.put("capacity", cache.getCapacity());
+            json.put("size", cache.getSize());
+            json.put("hits", cache.getHits());
+            json.put("misses", cache.getMisses());
+            entityCaches.add(json);
+        }
+        response.put("entityCaches", entityCaches);
+        JSONObject statementCache = new JSONObject();
+        statementCache.put("capacity", Db.db.getStatementCacheSize());
+        statementCache.put("hits", Db.db.getStatementCacheHits());
+        statementCache.put("misses", Db.db.getStatementCacheMisses());
+        response.put("statementCache", statementCache);
+        CommitExecutor commitExecutor = Db.db.getCommitExecutor();
+        JSONObject commitQueue = new JSONObject();
+        commitQueue.put("capacity", commitExecutor.getCapacity());
+        commitQueue.put("size", commitExecutor.getSize());
+        commitQueue.put("maxSize", commitExecutor.getMaxSize());
+        commitQueue.put("submitted", commitExecutor.getSubmitted());
+        commitQueue.put("completed", commitExecutor.getCompleted());
+        commitQueue.put("blocked", commitExecutor.getBlocked());
+        commitQueue.put("blockedTime", commitExecutor.getBlockedTime());
+        response.put("commitQueue", commitQueue);
+        JSONArray connectionPools = new JSONArray();
+        for (ConnectionPool pool : Db.db.getConnectionPools()) {
+            JSONObject json = new JSONObject();
+            json.put("name", pool.getName());
+            json.put("maxConnections", pool.getMaxConnections());
+            json.put("activeConnections", pool.getActiveConnections());
+            if (pool instanceof DbConnectionPool) {
+                DbConnectionPool dbPool = (DbConnectionPool) pool;
+                json.put("idleConnections", dbPool.getIdleConnections());
+                json.put("timeouts", dbPool.getTimeouts());
+                json.put("leaks", dbPool.getLeaks());
+                json.put("invalidConnections", dbPool.getInvalidConnections());
+                json.put("totalWaitTime", dbPool.getTotalWaitTime());
+                JSONArray waitTimeHistogram = new JSONArray();
+                long[] histogram = dbPool.getWaitTimeHistogram();
+                for (int i = 0; i < histogram.length; i++) {
+                    JSONObject bucket = new JSONObject();
+                    if (i < DbConnectionPool.WAIT_TIME_BUCKETS.length) {
+                        bucket.put("maxWaitTime", DbConnectionPool.WAIT_TIME_BUCKETS[i]);
+                    }
+                    bucket.put("count", histogram[i]);
+                    waitTimeHistogram.add(bucket);
+                }
+                json.put("waitTimeHistogram", waitTimeHistogram);
+            }
+            connectionPools.add(json);
+        }
+        response.put("connectionPools", connectionPools);
+        return response;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
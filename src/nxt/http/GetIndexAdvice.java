@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Db;
+import nxt.db.IndexAdvisor;
+import nxt.db.SqlStatistics;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class GetIndexAdvice extends APIServlet.APIRequestHandler {
+
+    static final GetIndexAdvice instance = new GetIndexAdvice();
+
+    static final int DEFAULT_MIN_ROWS = 1000;
+
+    private GetIndexAdvice() {
+        super(new APITag[] {APITag.DEBUG}, "minRows");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        int minRows = ParameterParser.getInt(req, "minRows", 0, Integer.MAX_VALUE, false);
+        SqlStatistics statistics = Db.db.getSqlStatistics();
+        if (statistics == null) {
+            return statisticsDisabled();
+        }
+        List<SqlStatistics.Entry> entries = statistics.getStatements();
+        entries.sort(Comparator.comparingLong(SqlStatistics.Entry::getTotalTime).reversed());
+        Map<String, SqlStatistics.Entry> statements = new HashMap<>();
+        for (SqlStatistics.Entry entry : entries) {
+            statements.put(entry.getSql(), entry);
+        }
+        List<IndexAdvisor.Advice> advice = analyze(entries, minRows);
+        JSONObject response = new JSONObject();
+        JSONArray scans = new JSONArray();
+        for (IndexAdvisor.Advice entry : advice) {
+            JSONObject json = new JSONObject();
+            json.put("sql", entry.getSql());
+            json.put("table", entry.getTable());
+            json.put("rows", entry.getRows());
+            if (entry.getIndex() != null) {
+                json.put("index", entry.getIndex());
+            }
+            SqlStatistics.Entry statement = statements.get(entry.getSql());
+            json.put("count", statement.getCount());
+            json.put("totalTime", statement.getTotalTime());
+            json.put("meanTime", statement.getMeanTime());
+            if (entry.getDdl() != null) {
+                json.put("suggestedIndex", entry.getDdl());
+            }
+            scans.add(json);
+        }
+        response.put("scans", scans);
+        String schemaUpdate = IndexAdvisor.getSchemaUpdate(Db.db, advice);
+        if (schemaUpdate != null) {
+            response.put("schemaUpdate", schemaUpdate);
+        }
+        return response;
+    }
+
+    static List<IndexAdvisor.Advice> analyze(List<SqlStatistics.Entry> entries, int minRows) {
+        List<String> statements = new ArrayList<>(entries.size());
+        for (SqlStatistics.Entry entry : entries) {
+            statements.add(entry.getSql());
+        }
+        return IndexAdvisor.analyze(Db.db, statements, minRows > 0 ? minRows : DEFAULT_MIN_ROWS);
+    }
+
+    static JSONObject statisticsDisabled() {
+        JSONObject response = new JSONObject();
+        response.put("errorCode", 4);
+        response.put("errorDescription", "SQL statistics are not enabled, set nxt.dbStatistics=true");
+        return response;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
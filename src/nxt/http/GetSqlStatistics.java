@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Db;
+import nxt.db.SqlStatistics;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Comparator;
+import java.util.List;
+
+import static nxt.http.JSONResponses.incorrect;
+
+public final class GetSqlStatistics extends APIServlet.APIRequestHandler {
+
+    static final GetSqlStatistics instance = new GetSqlStatistics();
+
+    private GetSqlStatistics() {
+        super(new APITag[] {APITag.DEBUG}, "sort", "limit");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        Comparator<SqlStatistics.Entry> comparator;
+        String sort = req.getParameter("sort");
+        if (sort == null || sort.isEmpty() || "totalTime".equals(sort)) {
+            comparator = Comparator.comparingLong(SqlStatistics.Entry::getTotalTime);
+        } else if ("count".equals(sort)) {
+            comparator = Comparator.comparingLong(SqlStatistics.Entry::getCount);
+        } else if ("meanTime".equals(sort)) {
+            comparator = Comparator.comparingLong(SqlStatistics.Entry::getMeanTime);
+        } else if ("maxTime".equals(sort)) {
+            comparator = Comparator.comparingLong(SqlStatistics.Entry::getMaxTime);
+        } else if ("rows".equals(sort)) {
+            comparator = Comparator.comparingLong(SqlStatistics.Entry::getRows);
+        } else {
+            throw new ParameterException(incorrect("sort", "must be one of totalTime, count, meanTime, maxTime, rows"));
+        }
+        int limit = ParameterParser.getInt(req, "limit", 0, Integer.MAX_VALUE, false);
+        SqlStatistics statistics = Db.db.getSqlStatistics();
+        if (statistics == null) {
+            JSONObject response = new JSONObject();
+            response.put("errorCode", 4);
+            response.put("errorDescription", "SQL statistics are not enabled, set nxt.dbStatistics=true");
+            return response;
+        }
+        JSONObject response = new JSONObject();
+        response.put("startTime", statistics.getStartTime());
+        response.put("transactions", entry(statistics.getTransactions()));
+        List<SqlStatistics.Entry> entries = statistics.getStatements();
+        entries.sort(comparator.reversed());
+        JSONArray statements = new JSONArray();
+        for (SqlStatistics.Entry entry : entries) {
+            if (limit > 0 && statements.size() >= limit) {
+                break;
+            }
+            JSONObject json = entry(entry);
+            json.put("sql", entry.getSql());
+            json.put("rows", entry.getRows());
+            statements.add(json);
+        }
+        response.put("statements", statements);
+        return response;
+    }
+
+    private static JSONObject entry(SqlStatistics.Entry entry) {
+        JSONObject json = new JSONObject();
+        json.put("count", entry.getCount());
+        json.put("totalTime", entry.getTotalTime());
+        json.put("meanTime", entry.getMeanTime());
+        json.put("p99Time", entry.getPercentileTime(99));
+        json.put("maxTime", entry.getMaxTime());
+        return json;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
@@ -27,6 +27,7 @@ import nxt.Poll;
 import nxt.Transaction;
 import nxt.crypto.Crypto;
 import nxt.crypto.EncryptedData;
+import nxt.db.DbCursor;
 import nxt.util.Convert;
 import nxt.util.Logger;
 import nxt.util.Search;
@@ -454,6 +455,23 @@ public final class ParameterParser {
         return lastIndex;
     }
 
+    public static DbCursor getCursor(HttpServletRequest req, int columns) throws ParameterException {
+        String cursorValue = Convert.emptyToNull(req.getParameter("cursor"));
+        if (cursorValue == null) {
+            return null;
+        }
+        DbCursor cursor;
+        try {
+            cursor = DbCursor.parse(cursorValue);
+        } catch (IllegalArgumentException e) {
+            throw new ParameterException(incorrect("cursor"));
+        }
+        if (cursor.size() != columns) {
+            throw new ParameterException(incorrect("cursor"));
+        }
+        return cursor;
+    }
+
     public static int getNumberOfConfirmations(HttpServletRequest req) throws ParameterException {
         return getInt(req, "numberOfConfirmations", 0, Nxt.getBlockchain().getHeight(), false);
     }
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Db;
+import nxt.db.SqlStatistics;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+public final class ResetSqlStatistics extends APIServlet.APIRequestHandler {
+
+    static final ResetSqlStatistics instance = new ResetSqlStatistics();
+
+    private ResetSqlStatistics() {
+        super(new APITag[] {APITag.DEBUG});
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        SqlStatistics statistics = Db.db.getSqlStatistics();
+        JSONObject response = new JSONObject();
+        if (statistics != null) {
+            statistics.reset();
+        }
+        response.put("done", statistics != null);
+        return response;
+    }
+
+    @Override
+    protected final boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
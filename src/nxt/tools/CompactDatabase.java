@@ -69,81 +69,30 @@ public class CompactDatabase {
         //
         // Get the database URL
         //
-        String dbPrefix = Constants.isTestnet ? "nxt.testDb" : "nxt.db";
-        String dbType = Nxt.getStringProperty(dbPrefix + "Type");
-        if (!"h2".equals(dbType)) {
-            Logger.logErrorMessage("Database type must be 'h2'");
-            return 1;
-        }
-        String dbUrl = Nxt.getStringProperty(dbPrefix + "Url");
+        String dbUrl = getDbUrl();
         if (dbUrl == null) {
-            String dbPath = Nxt.getDbDir(Nxt.getStringProperty(dbPrefix + "Dir"));
-            dbUrl = String.format("jdbc:%s:%s", dbType, dbPath);
+            return 1;
         }
-        String dbParams = Nxt.getStringProperty(dbPrefix + "Params");
-        dbUrl += ";" + dbParams;
         if (!dbUrl.contains("MV_STORE=")) {
             dbUrl += ";MV_STORE=FALSE";
         }
+        String dbPrefix = Constants.isTestnet ? "nxt.testDb" : "nxt.db";
         String dbUsername = Nxt.getStringProperty(dbPrefix + "Username", "sa");
         String dbPassword = Nxt.getStringProperty(dbPrefix + "Password", "sa", true);
-        //
-        // Get the database path.  This is the third colon-separated operand and is
-        // terminated by a semi-colon or by the end of the string.
-        //
-        int pos = dbUrl.indexOf(':');
-        if (pos >= 0) {
-            pos = dbUrl.indexOf(':', pos+1);
-        }
-        if (pos < 0) {
-            Logger.logErrorMessage("Malformed database URL: " + dbUrl);
-            return 1;
-        }
-        String dbDir;
-        int startPos = pos + 1;
-        int endPos = dbUrl.indexOf(';', startPos);
-        if (endPos < 0) {
-            dbDir = dbUrl.substring(startPos);
-        } else {
-            dbDir = dbUrl.substring(startPos, endPos);
-        }
-        //
-        // Remove the optional 'file' operand
-        //
-        if (dbDir.startsWith("file:"))
-            dbDir = dbDir.substring(5);
-        //
-        // Remove the database prefix from the end of the database path.  The path
-        // separator can be either '/' or '\' (Windows will accept either separator
-        // so we can't rely on the system property).
-        //
-        endPos = dbDir.lastIndexOf('\\');
-        pos = dbDir.lastIndexOf('/');
-        if (endPos >= 0) {
-            if (pos >= 0) {
-                endPos = Math.max(endPos, pos);
-            }
-        } else {
-            endPos = pos;
-        }
-        if (endPos < 0) {
-            Logger.logErrorMessage("Malformed database URL: " + dbUrl);
+        String dbDir = getDbDir(dbUrl);
+        if (dbDir == null) {
             return 1;
         }
-        dbDir = dbDir.substring(0, endPos);
         Logger.logInfoMessage("Database directory is '" + dbDir + '"');
         //
         // Create our files
         //
         int phase = 0;
         File sqlFile = new File(dbDir, "backup.sql.gz");
-        File dbFile = new File(dbDir, "nxt.h2.db");
+        File dbFile = new File(dbDir, dbUrl.contains("MV_STORE=TRUE") ? "nxt.mv.db" : "nxt.h2.db");
         if (!dbFile.exists()) {
-            dbFile = new File(dbDir, "nxt.mv.db");
-            if (!dbFile.exists()) {
-                Logger.logErrorMessage("NRS database not found");
-                return 1;
-            }
+            Logger.logErrorMessage("NRS database " + dbFile.getPath() + " not found");
+            return 1;
         }
         File oldFile = new File(dbFile.getPath() + ".bak");
         try {
@@ -198,17 +147,9 @@ public class CompactDatabase {
                     //
                     // We failed while creating the new database
                     //
-                    File newFile = new File(dbDir, "nxt.h2.db");
-                    if (newFile.exists()) {
-                        if (!newFile.delete()) {
-                            Logger.logErrorMessage(String.format("Unable to delete '%s'", newFile.getPath()));
-                        }
-                    } else {
-                        newFile = new File(dbDir, "nxt.mv.db");
-                        if (newFile.exists()) {
-                            if (!newFile.delete()) {
-                                Logger.logErrorMessage(String.format("Unable to delete '%s'", newFile.getPath()));
-                            }
+                    if (dbFile.exists()) {
+                        if (!dbFile.delete()) {
+                            Logger.logErrorMessage(String.format("Unable to delete '%s'", dbFile.getPath()));
                         }
                     }
                     if (!oldFile.renameTo(dbFile)) {
@@ -231,4 +172,79 @@ public class CompactDatabase {
         }
         return exitCode;
     }
+
+    /**
+     * Get the database URL, including the database parameters
+     *
+     * @return                      Database URL or null if the database is not an H2 database
+     */
+    static String getDbUrl() {
+        String dbPrefix = Constants.isTestnet ? "nxt.testDb" : "nxt.db";
+        String dbType = Nxt.getStringProperty(dbPrefix + "Type");
+        if (!"h2".equals(dbType)) {
+            Logger.logErrorMessage("Database type must be 'h2'");
+            return null;
+        }
+        String dbUrl = Nxt.getStringProperty(dbPrefix + "Url");
+        if (dbUrl == null) {
+            String dbPath = Nxt.getDbDir(Nxt.getStringProperty(dbPrefix + "Dir"));
+            dbUrl = String.format("jdbc:%s:%s", dbType, dbPath);
+        }
+        String dbParams = Nxt.getStringProperty(dbPrefix + "Params");
+        dbUrl += ";" + dbParams;
+        return dbUrl;
+    }
+
+    /**
+     * Get the database directory
+     *
+     * @param   dbUrl               Database URL
+     * @return                      Database directory or null if the URL is malformed
+     */
+    static String getDbDir(String dbUrl) {
+        //
+        // Get the database path.  This is the third colon-separated operand and is
+        // terminated by a semi-colon or by the end of the string.
+        //
+        int pos = dbUrl.indexOf(':');
+        if (pos >= 0) {
+            pos = dbUrl.indexOf(':', pos+1);
+        }
+        if (pos < 0) {
+            Logger.logErrorMessage("Malformed database URL: " + dbUrl);
+            return null;
+        }
+        String dbDir;
+        int startPos = pos + 1;
+        int endPos = dbUrl.indexOf(';', startPos);
+        if (endPos < 0) {
+            dbDir = dbUrl.substring(startPos);
+        } else {
+            dbDir = dbUrl.substring(startPos, endPos);
+        }
+        //
+        // Remove the optional 'file' operand
+        //
+        if (dbDir.startsWith("file:"))
+            dbDir = dbDir.substring(5);
+        //
+        // Remove the database prefix from the end of the database path.  The path
+        // separator can be either '/' or '\' (Windows will accept either separator
+        // so we can't rely on the system property).
+        //
+        endPos = dbDir.lastIndexOf('\\');
+        pos = dbDir.lastIndexOf('/');
+        if (endPos >= 0) {
+            if (pos >= 0) {
+                endPos = Math.max(endPos, pos);
+            }
+        } else {
+            endPos = pos;
+        }
+        if (endPos < 0) {
+            Logger.logErrorMessage("Malformed database URL: " + dbUrl);
+            return null;
+        }
+        return dbDir.substring(0, endPos);
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2017 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.tools;
+
+import nxt.Constants;
+import nxt.Nxt;
+import nxt.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Convert the NRS database between the H2 PageStore (nxt.h2.db) and the H2 MVStore
+ * (nxt.mv.db) storage engines.  The NRS application must not be running.
+ *
+ * The original database file is kept with a .bak extension.  The Lucene fulltext
+ * index does not depend on the storage engine and is kept as is.  After the
+ * migration, MV_STORE=TRUE (or MV_STORE=FALSE) must be set in nxt.dbParams.
+ *
+ * To migrate the database to the MVStore on Linux or Mac:
+ *
+ *   java -cp "classes:lib/*:conf" nxt.tools.MigrateDatabase mvstore
+ *
+ * To migrate the database back to the PageStore on Windows:
+ *
+ *   java -cp "classes;lib/*;conf" -Dnxt.runtime.mode=desktop nxt.tools.MigrateDatabase pagestore
+ */
+public class MigrateDatabase {
+
+    /**
+     * Migrate the NRS database
+     *
+     * @param   args                Command line arguments
+     */
+    public static void main(String[] args) {
+        //
+        // Initialize Nxt properties and logging
+        //
+        Logger.init();
+        //
+        // Migrate the database
+        //
+        int exitCode;
+        if (args.length != 1 || !("mvstore".equals(args[0]) || "pagestore".equals(args[0]))) {
+            Logger.logErrorMessage("Usage: MigrateDatabase mvstore|pagestore");
+            exitCode = 1;
+        } else {
+            exitCode = migrateDatabase("mvstore".equals(args[0]));
+        }
+        //
+        // Shutdown the logger and exit
+        //
+        Logger.shutdown();
+        System.exit(exitCode);
+    }
+
+    /**
+     * Migrate the database
+     *
+     * @param   toMvStore           TRUE to migrate to the MVStore, FALSE to migrate to the PageStore
+     */
+    private static int migrateDatabase(boolean toMvStore) {
+        int exitCode = 0;
+        String dbUrl = CompactDatabase.getDbUrl();
+        if (dbUrl == null) {
+            return 1;
+        }
+        String dbPrefix = Constants.isTestnet ? "nxt.testDb" : "nxt.db";
+        String dbUsername = Nxt.getStringProperty(dbPrefix + "Username", "sa");
+        String dbPassword = Nxt.getStringProperty(dbPrefix + "Password", "sa", true);
+        String dbDir = CompactDatabase.getDbDir(dbUrl);
+        if (dbDir == null) {
+            return 1;
+        }
+        Logger.logInfoMessage("Database directory is '" + dbDir + '"');
+        try {
+            migrate(dbUrl, toMvStore, dbDir, dbUsername, dbPassword);
+            Logger.logInfoMessage("Database successfully migrated, set MV_STORE=" + (toMvStore ? "TRUE" : "FALSE")
+                    + " in " + dbPrefix + "Params before starting NRS");
+        } catch (Throwable exc) {
+            Logger.logErrorMessage("Unable to migrate the database", exc);
+            exitCode = 1;
+        }
+        return exitCode;
+    }
+
+    /**
+     * Replace the storage engine in the database URL
+     *
+     * @param   dbUrl               Database URL
+     * @param   mvStore             TRUE for the MVStore, FALSE for the PageStore
+     * @return                      Database URL
+     */
+    static String setStorageEngine(String dbUrl, boolean mvStore) {
+        return dbUrl.replaceAll("(?i);MV_STORE=[^;]*", "") + ";MV_STORE=" + (mvStore ? "TRUE" : "FALSE");
+    }
+
+    /**
+     * Copy the schema and the data of the database into a new database using the other storage engine
+     *
+     * H2 opens an existing PageStore database even if MV_STORE=TRUE is specified, so the
+     * original database file is renamed before the new database is created.
+     *
+     * @param   dbUrl               Database URL
+     * @param   toMvStore           TRUE to migrate to the MVStore, FALSE to migrate to the PageStore
+     * @param   dbDir               Database directory
+     * @param   dbUsername          Database user name
+     * @param   dbPassword          Database password
+     * @throws  IOException         Unable to access the database files
+     * @throws  SQLException        Unable to migrate the database
+     */
+    static void migrate(String dbUrl, boolean toMvStore, String dbDir, String dbUsername, String dbPassword)
+                                    throws IOException, SQLException {
+        File sourceFile = new File(dbDir, toMvStore ? "nxt.h2.db" : "nxt.mv.db");
+        File targetFile = new File(dbDir, toMvStore ? "nxt.mv.db" : "nxt.h2.db");
+        File oldFile = new File(sourceFile.getPath() + ".bak");
+        File sqlFile = new File(dbDir, "backup.sql.gz");
+        if (!sourceFile.exists()) {
+            throw new IOException(String.format("NRS database '%s' not found", sourceFile.getPath()));
+        }
+        if (targetFile.exists()) {
+            throw new IOException(String.format("NRS database '%s' already exists", targetFile.getPath()));
+        }
+        if (sqlFile.exists()) {
+            if (!sqlFile.delete()) {
+                throw new IOException(String.format("Unable to delete '%s'", sqlFile.getPath()));
+            }
+        }
+        boolean renamed = false;
+        boolean migrated = false;
+        try {
+            //
+            // Create the SQL script
+            //
+            Logger.logInfoMessage("Creating the SQL script");
+            try (Connection conn = DriverManager.getConnection(setStorageEngine(dbUrl, !toMvStore) + ";IFEXISTS=TRUE",
+                                                               dbUsername, dbPassword);
+                    Statement s = conn.createStatement()) {
+                s.execute("SCRIPT TO '" + sqlFile.getPath() + "' COMPRESSION GZIP CHARSET 'UTF-8'");
+            }
+            if (!sourceFile.renameTo(oldFile)) {
+                throw new IOException(String.format("Unable to rename '%s' to '%s'",
+                                                    sourceFile.getPath(), oldFile.getPath()));
+            }
+            renamed = true;
+            //
+            // Create the new database
+            //
+            Logger.logInfoMessage("Creating the new database");
+            try (Connection conn = DriverManager.getConnection(setStorageEngine(dbUrl, toMvStore), dbUsername, dbPassword);
+                    Statement s = conn.createStatement()) {
+                s.execute("RUNSCRIPT FROM '" + sqlFile.getPath() + "' COMPRESSION GZIP CHARSET 'UTF-8'");
+                s.execute("ANALYZE");
+                s.execute("SHUTDOWN");
+            }
+            migrated = true;
+        } finally {
+            if (!migrated) {
+                if (targetFile.exists()) {
+                    if (!targetFile.delete()) {
+                        Logger.logErrorMessage(String.format("Unable to delete '%s'", targetFile.getPath()));
+                    }
+                }
+                if (renamed && !oldFile.renameTo(sourceFile)) {
+                    Logger.logErrorMessage(String.format("Unable to rename '%s' to '%s'",
+                                                         oldFile.getPath(), sourceFile.getPath()));
+                }
+            }
+            if (sqlFile.exists()) {
+                if (!sqlFile.delete()) {
+                    Logger.logErrorMessage(String.format("Unable to delete '%s'", sqlFile.getPath()));
+                }
+            }
+        }
+    }
+}
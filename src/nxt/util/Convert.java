@@ -406,6 +406,19 @@ public final class Convert {
         return o1.length - o2.length;
     };
 
+    /**
+     * Compare two equally long big numbers stored as unsigned ints, most significant int first
+     */
+    public static int compareUnsigned(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int result = Integer.compareUnsigned(a[i], b[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
     public static byte[] toNoMatterSignedByteArray(BigInteger value) {
         byte[] array = value.toByteArray();
         if (array[0] == 0) {
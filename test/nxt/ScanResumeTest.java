@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2017 The XEL Core Developers
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import nxt.crypto.Crypto;
+import nxt.helpers.RedeemFunctions;
+import nxt.util.Listener;
+import nxt.util.Time;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class ScanResumeTest extends AbstractForgingTest {
+
+    private static final int SCAN_HEIGHT = 1;
+
+    private static long accountId;
+    private static long balance;
+    private static int topHeight;
+
+    @BeforeClass
+    public static void init() {
+        Properties properties = ScanResumeTest.newTestProperties();
+        properties.setProperty("nxt.enableFakeForging", "true");
+        properties.setProperty("nxt.timeMultiplier", "1");
+        AbstractForgingTest.init(properties);
+
+        Nxt.getBlockchainProcessor().popOffTo(0);
+        Nxt.setTime(new Time.CounterTime(Nxt.getEpochTime()));
+        accountId = Account.getId(Crypto.getPublicKey(testForgingSecretPhrase));
+        String[] privkeys = new String[]{"5JDSuYmvAAF85XFQxPTkHGFrNfAk3mhtZKmXvsLJiFZ7tDrSBmp"};
+        Assert.assertTrue("Failed to create redeem transaction.",
+                RedeemFunctions.redeem("1XELjH6JgPS48ZL7ew1Zz2xxczyzqit3h", testForgingSecretPhrase, privkeys));
+        try {
+            for (int i = 0; i < 5; i++) {
+                blockchainProcessor.generateBlock(testForgingSecretPhrase, Nxt.getEpochTime());
+            }
+        } catch (BlockchainProcessor.BlockNotAcceptedException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        topHeight = blockchain.getHeight();
+        balance = Account.getAccount(accountId).getBalanceNQT();
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        AbstractForgingTest.shutdown();
+    }
+
+    @Test
+    public void resumeBelowTop() {
+        int interruptHeight = topHeight - 2;
+        interruptScan(interruptHeight);
+        Assert.assertEquals(interruptHeight, getAppliedHeight());
+        List<Integer> scanned = resumeScan();
+        List<Integer> expected = new ArrayList<>();
+        for (int height = interruptHeight + 1; height <= topHeight; height++) {
+            expected.add(height);
+        }
+        Assert.assertEquals(expected, scanned);
+        assertScanDone();
+    }
+
+    @Test
+    public void resumeAtTop() {
+        interruptScan(topHeight);
+        Assert.assertEquals(topHeight, getAppliedHeight());
+        List<Integer> scanned = resumeScan();
+        // the top block is applied again, as there is no block above it to start from
+        List<Integer> expected = new ArrayList<>();
+        expected.add(topHeight);
+        Assert.assertEquals(expected, scanned);
+        assertScanDone();
+    }
+
+    private static void interruptScan(int interruptHeight) {
+        Listener<Block> interrupt = block -> {
+            if (block.getHeight() == interruptHeight) {
+                throw new IllegalStateException("Scan interrupted at height " + interruptHeight);
+            }
+        };
+        blockchainProcessor.addListener(interrupt, BlockchainProcessor.Event.BLOCK_SCANNED);
+        try {
+            blockchainProcessor.scan(SCAN_HEIGHT, false);
+            Assert.fail("Scan was not interrupted");
+        } catch (IllegalStateException expected) {
+        } finally {
+            blockchainProcessor.removeListener(interrupt, BlockchainProcessor.Event.BLOCK_SCANNED);
+        }
+        // a restarted node starts from the last block in the database
+        blockchain.setLastBlock(BlockDb.findLastBlock());
+    }
+
+    private static List<Integer> resumeScan() {
+        List<Integer> scanned = new ArrayList<>();
+        Listener<Block> listener = block -> scanned.add(block.getHeight());
+        blockchainProcessor.addListener(listener, BlockchainProcessor.Event.BLOCK_SCANNED);
+        try {
+            blockchainProcessor.resumeScan();
+        } finally {
+            blockchainProcessor.removeListener(listener, BlockchainProcessor.Event.BLOCK_SCANNED);
+        }
+        return scanned;
+    }
+
+    private static void assertScanDone() {
+        Assert.assertEquals(-1, getAppliedHeight());
+        Assert.assertEquals(topHeight, blockchain.getHeight());
+        Assert.assertEquals(balance, Account.getAccount(accountId).getBalanceNQT());
+    }
+
+    private static int getAppliedHeight() {
+        try (Connection con = Db.db.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT applied_height FROM scan")) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2017 The XEL Core Developers
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import nxt.crypto.Crypto;
+import nxt.helpers.RedeemFunctions;
+import nxt.util.Time;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+
+public class SnapshotTest extends AbstractForgingTest {
+
+    @Test
+    public void exportAndImport() throws IOException {
+        Properties properties = SnapshotTest.newTestProperties();
+        properties.setProperty("nxt.enableFakeForging", "true");
+        properties.setProperty("nxt.timeMultiplier", "1");
+        AbstractForgingTest.init(properties);
+
+        Nxt.getBlockchainProcessor().popOffTo(0);
+        Nxt.setTime(new Time.CounterTime(Nxt.getEpochTime()));
+        long accountId = Account.getId(Crypto.getPublicKey(testForgingSecretPhrase));
+        String[] privkeys = new String[]{"5JDSuYmvAAF85XFQxPTkHGFrNfAk3mhtZKmXvsLJiFZ7tDrSBmp"};
+        Assert.assertTrue("Failed to create redeem transaction.",
+                RedeemFunctions.redeem("1XELjH6JgPS48ZL7ew1Zz2xxczyzqit3h", testForgingSecretPhrase, privkeys));
+        try {
+            for (int i = 0; i < 3; i++) {
+                blockchainProcessor.generateBlock(testForgingSecretPhrase, Nxt.getEpochTime());
+            }
+        } catch (BlockchainProcessor.BlockNotAcceptedException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        Block lastBlock = blockchain.getLastBlock();
+        long balance = Account.getAccount(accountId).getBalanceNQT();
+
+        File dir = Files.createTempDirectory("snapshot_test").toFile();
+        File file = Snapshot.export(dir);
+        try {
+            try {
+                Snapshot.importSnapshot(file);
+                Assert.fail("Snapshot imported without a trusted block id");
+            } catch (RuntimeException expected) {
+            }
+            try {
+                Snapshot.importSnapshot(file, lastBlock.getPreviousBlockId());
+                Assert.fail("Snapshot of an untrusted block imported");
+            } catch (RuntimeException expected) {
+            }
+            Snapshot.importSnapshot(file, lastBlock.getId());
+            Assert.assertEquals(lastBlock.getId(), BlockDb.findLastBlock().getId());
+            Assert.assertEquals(lastBlock.getHeight(), BlockDb.findLastBlock().getHeight());
+            Assert.assertEquals(balance, Account.getAccount(accountId).getBalanceNQT());
+        } finally {
+            Files.delete(file.toPath());
+            Files.delete(dir.toPath());
+        }
+        AbstractForgingTest.shutdown();
+    }
+
+}
@@ -0,0 +1,120 @@
+package nxt.computation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CompositeBufferReaderTest {
+
+    private static final int HEADER = 8;
+    private static final int ROUNDS = 500;
+
+    @Test
+    public void randomReadsMatchByteBuffer() {
+        Random random = new Random(4711);
+        for (int round = 0; round < ROUNDS; round++) {
+            byte[] data = new byte[random.nextInt(300)];
+            random.nextBytes(data);
+            ByteBuffer expected = ByteBuffer.wrap(data);
+            CompositeBufferReader reader = CompositeBufferReader.fromChunks(randomChunks(data, random), HEADER);
+            Assert.assertEquals(data.length, reader.remaining());
+            while (expected.hasRemaining()) {
+                switch (random.nextInt(5)) {
+                    case 0:
+                        Assert.assertEquals(expected.get(), reader.get());
+                        break;
+                    case 1:
+                        if (expected.remaining() < 2) continue;
+                        Assert.assertEquals(expected.getShort(), reader.getShort());
+                        break;
+                    case 2:
+                        if (expected.remaining() < 4) continue;
+                        Assert.assertEquals(expected.getInt(), reader.getInt());
+                        break;
+                    case 3:
+                        if (expected.remaining() < 8) continue;
+                        Assert.assertEquals(expected.getLong(), reader.getLong());
+                        break;
+                    default:
+                        byte[] a = new byte[random.nextInt(expected.remaining() + 1)];
+                        byte[] b = new byte[a.length];
+                        expected.get(a);
+                        reader.get(b);
+                        Assert.assertArrayEquals(a, b);
+                }
+                Assert.assertEquals(expected.remaining(), reader.remaining());
+            }
+            Assert.assertFalse(reader.hasRemaining());
+        }
+    }
+
+    @Test
+    public void readingPastTheEndUnderflows() {
+        Random random = new Random(815);
+        for (int round = 0; round < ROUNDS; round++) {
+            byte[] data = new byte[random.nextInt(8)];
+            CompositeBufferReader reader = CompositeBufferReader.fromChunks(randomChunks(data, random), HEADER);
+            try {
+                reader.getLong();
+                Assert.fail("expected underflow for " + data.length + " bytes");
+            } catch (BufferUnderflowException expected) {
+                Assert.assertEquals(data.length, reader.remaining());
+            }
+        }
+    }
+
+    @Test
+    public void attachmentsParseAcrossChunks() {
+        Random random = new Random(1234);
+        for (int round = 0; round < ROUNDS / 10; round++) {
+            byte[] multiplier = new byte[ComputationConstants.MULTIPLIER_LENGTH];
+            random.nextBytes(multiplier);
+            byte[] verificator = new byte[4 * random.nextInt(ComputationConstants.VERIFICATOR_INTS)];
+            random.nextBytes(verificator);
+            byte[] sourceCode = new byte[1 + random.nextInt(2000)];
+            random.nextBytes(sourceCode);
+
+            IComputationAttachment[] attachments = {
+                    new CommandPowBty(random.nextLong(), 0, true, multiplier, new byte[0], verificator, random.nextInt()),
+                    new CommandCancelWork(random.nextLong()),
+                    new CommandNewWork(random.nextInt(), (short) random.nextInt(), random.nextLong(), random.nextLong(),
+                            random.nextInt(), random.nextInt(), sourceCode)
+            };
+            for (IComputationAttachment attachment : attachments) {
+                byte[] bytes = attachment.getByteArray();
+                CompositeBufferReader reader = CompositeBufferReader.fromChunks(randomChunks(bytes, random), HEADER);
+                Assert.assertEquals(attachment.getMyMessageIdentifier(), reader.get());
+                IComputationAttachment parsed;
+                if (attachment instanceof CommandPowBty) {
+                    parsed = new CommandPowBty(reader);
+                } else if (attachment instanceof CommandCancelWork) {
+                    parsed = new CommandCancelWork(reader);
+                } else {
+                    parsed = new CommandNewWork(reader);
+                }
+                Assert.assertFalse(reader.hasRemaining());
+                Assert.assertArrayEquals(bytes, parsed.getByteArray());
+            }
+        }
+    }
+
+    // splits data into chunks of random size, each one prefixed with a dummy header which the reader has to skip
+    private static byte[][] randomChunks(byte[] data, Random random) {
+        List<byte[]> chunks = new ArrayList<>();
+        int pos = 0;
+        do {
+            int length = Math.min(random.nextInt(20), data.length - pos);
+            byte[] chunk = new byte[HEADER + length];
+            random.nextBytes(chunk);
+            System.arraycopy(data, pos, chunk, HEADER, length);
+            chunks.add(chunk);
+            pos += length;
+        } while (pos < data.length || random.nextInt(4) == 0);
+        return chunks.toArray(new byte[chunks.size()][]);
+    }
+}
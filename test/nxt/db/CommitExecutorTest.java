@@ -0,0 +1,150 @@
+package nxt.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class CommitExecutorTest {
+
+    @Test
+    public void ordered() {
+        CommitExecutor executor = new CommitExecutor(4);
+        try {
+            List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            for (int i = 0; i < 1000; i++) {
+                int value = i;
+                executor.submit(() -> {
+                    thread.set(Thread.currentThread());
+                    results.add(value);
+                });
+            }
+            executor.await();
+            Assert.assertEquals(1000, results.size());
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(i, (int) results.get(i));
+            }
+            Assert.assertNotSame(Thread.currentThread(), thread.get());
+            Assert.assertEquals(1000, executor.getSubmitted());
+            Assert.assertEquals(1000, executor.getCompleted());
+            Assert.assertEquals(0, executor.getSize());
+            Assert.assertTrue(executor.getMaxSize() <= 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void backPressure() throws InterruptedException {
+        CommitExecutor executor = new CommitExecutor(1);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger count = new AtomicInteger();
+            executor.submit(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                count.incrementAndGet();
+            });
+            started.await();
+            executor.submit(count::incrementAndGet);
+            Assert.assertEquals(1, executor.getSize());
+            Thread submitter = new Thread(() -> executor.submit(count::incrementAndGet));
+            submitter.start();
+            for (int i = 0; i < 100 && executor.getBlocked() == 0; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, executor.getBlocked());
+            Thread.sleep(50);
+            Assert.assertTrue(submitter.isAlive());
+            Assert.assertEquals(0, count.get());
+            release.countDown();
+            submitter.join(10000);
+            Assert.assertFalse(submitter.isAlive());
+            executor.await();
+            Assert.assertEquals(3, count.get());
+            Assert.assertEquals(1, executor.getMaxSize());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void synchronous() {
+        CommitExecutor executor = new CommitExecutor(0);
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        executor.submit(() -> thread.set(Thread.currentThread()));
+        Assert.assertSame(Thread.currentThread(), thread.get());
+        executor.submit(() -> {
+            throw new IllegalStateException("test");
+        });
+        Assert.assertEquals(2, executor.getCompleted());
+        executor.shutdown();
+    }
+
+    @Test
+    public void callbacks() throws SQLException {
+        TransactionalDb db = TestDb.create(TestDb.properties("commit_executor_test").commitQueueSize(16),
+                "CREATE TABLE item (id INT NOT NULL PRIMARY KEY)");
+        try {
+            List<String> events = Collections.synchronizedList(new ArrayList<>());
+            TransactionalDb.TransactionCallback callback = new TransactionalDb.TransactionCallback() {
+                @Override
+                public void commit() {
+                    events.add("commit");
+                    db.submitCommitTask(() -> {
+                        try (Connection con = db.getConnection();
+                             Statement stmt = con.createStatement();
+                             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM item")) {
+                            rs.next();
+                            events.add(Thread.currentThread().getName() + " " + rs.getInt(1));
+                        } catch (SQLException e) {
+                            throw new RuntimeException(e.toString(), e);
+                        }
+                    });
+                }
+
+                @Override
+                public void rollback() {
+                    events.add("rollback");
+                }
+            };
+            for (int i = 0; i < 2; i++) {
+                Connection con = db.beginTransaction();
+                try (Statement stmt = con.createStatement()) {
+                    stmt.executeUpdate("INSERT INTO item (id) VALUES (" + i + ")");
+                    db.registerCallback(callback);
+                    if (i == 0) {
+                        db.commitTransaction();
+                    } else {
+                        db.rollbackTransaction();
+                    }
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            db.awaitCommitTasks();
+            Assert.assertEquals(3, events.size());
+            Assert.assertEquals("commit", events.get(0));
+            Assert.assertTrue(events.contains("CommitCallbacks 1"));
+            Assert.assertTrue(events.contains("rollback"));
+            Assert.assertEquals(1, db.getCommitExecutor().getCompleted());
+        } finally {
+            db.shutdown();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package nxt.db;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class DbConnectionPoolTest {
+
+    private static final String DB_URL = "jdbc:h2:mem:connection_pool_test;DB_CLOSE_DELAY=-1";
+
+    private static TransactionalDb db;
+
+    @BeforeClass
+    public static void init() {
+        db = TestDb.create(TestDb.properties("connection_pool_test")
+                .maxConnections(3)
+                .loginTimeout(1)
+                .maxTransactionConnections(1));
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void reuseAndTimeout() throws SQLException {
+        DbConnectionPool pool = new DbConnectionPool("test", DB_URL, "sa", "sa", 2, 1, 0);
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        Assert.assertEquals(2, pool.getActiveConnections());
+        long start = System.currentTimeMillis();
+        try {
+            pool.getConnection();
+            Assert.fail("Pool should be exhausted");
+        } catch (SQLException expected) {
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start >= 1000);
+        Assert.assertEquals(1, pool.getTimeouts());
+        first.close();
+        first.close();
+        Assert.assertEquals(1, pool.getActiveConnections());
+        Assert.assertEquals(1, pool.getIdleConnections());
+        try (Connection third = pool.getConnection();
+             Statement stmt = third.createStatement()) {
+            Assert.assertTrue(third.getAutoCommit());
+            stmt.executeQuery("SELECT 1").close();
+            Assert.assertEquals(0, pool.getIdleConnections());
+        }
+        second.close();
+        Assert.assertEquals(0, pool.getActiveConnections());
+        Assert.assertEquals(2, pool.getIdleConnections());
+        long[] histogram = pool.getWaitTimeHistogram();
+        long borrows = 0;
+        for (long count : histogram) {
+            borrows += count;
+        }
+        Assert.assertEquals(3, borrows);
+        pool.dispose();
+        Assert.assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    public void leakDetection() throws Exception {
+        DbConnectionPool pool = new DbConnectionPool("test", DB_URL, "sa", "sa", 1, 1, 1);
+        Connection con = pool.getConnection();
+        Thread.sleep(1100);
+        try {
+            pool.getConnection();
+            Assert.fail("Pool should be exhausted");
+        } catch (SQLException expected) {
+        }
+        Assert.assertEquals(1, pool.getLeaks());
+        con.close();
+        Assert.assertEquals(1, pool.getLeaks());
+        pool.getConnection().close();
+        Assert.assertEquals(1, pool.getLeaks());
+        pool.dispose();
+    }
+
+    @Test
+    public void separateTransactionPool() throws SQLException {
+        Assert.assertEquals(2, db.getConnectionPools().size());
+        ConnectionPool readPool = db.getConnectionPools().get(0);
+        ConnectionPool transactionPool = db.getConnectionPools().get(1);
+        Assert.assertEquals(3, readPool.getMaxConnections());
+        Assert.assertEquals(1, transactionPool.getMaxConnections());
+        db.beginTransaction();
+        try {
+            Assert.assertEquals(1, transactionPool.getActiveConnections());
+            Assert.assertEquals(0, readPool.getActiveConnections());
+        } finally {
+            db.endTransaction();
+        }
+        Assert.assertEquals(0, transactionPool.getActiveConnections());
+        try (Connection con = db.getConnection()) {
+            Assert.assertEquals(1, readPool.getActiveConnections());
+        }
+        Assert.assertEquals(0, readPool.getActiveConnections());
+    }
+
+}
@@ -0,0 +1,98 @@
+package nxt.db;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DbCursorTest {
+
+    private static final int ROWS = 2000;
+    private static final int PAGE_SIZE = 37;
+
+    private static TransactionalDb db;
+
+    @BeforeClass
+    public static void init() {
+        db = TestDb.create("db_cursor_test",
+                "CREATE TABLE item (db_id IDENTITY, timestamp INT NOT NULL, height INT NOT NULL)",
+                "CREATE INDEX item_height_idx ON item (height DESC, db_id DESC)",
+                // several rows per height and several heights per timestamp, not inserted in height order
+                "INSERT INTO item (timestamp, height) SELECT MOD(X * 7, 500) / 5, MOD(X * 7, 500) "
+                        + "FROM SYSTEM_RANGE(1, " + ROWS + ")");
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void token() {
+        DbCursor cursor = new DbCursor(1234, -1L, Long.MIN_VALUE);
+        Assert.assertEquals(cursor, DbCursor.parse(cursor.toString()));
+        Assert.assertEquals(3, DbCursor.parse(cursor.toString()).size());
+        try {
+            DbCursor.parse("AAAA");
+            Assert.fail("Invalid cursor accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void singleColumn() throws SQLException {
+        walk("db_id");
+    }
+
+    @Test
+    public void twoColumns() throws SQLException {
+        walk("height", "db_id");
+    }
+
+    @Test
+    public void threeColumns() throws SQLException {
+        walk("timestamp", "height", "db_id");
+    }
+
+    private static void walk(String... columns) throws SQLException {
+        String sort = " ORDER BY " + String.join(" DESC, ", columns) + " DESC ";
+        List<Long> expected = new ArrayList<>();
+        try (DbIterator<Long> iterator = select(null, columns, sort, 0, -1)) {
+            iterator.forEach(expected::add);
+        }
+        Assert.assertEquals(ROWS, expected.size());
+        List<Long> actual = new ArrayList<>();
+        DbCursor cursor = null;
+        int pages = 0;
+        while (true) {
+            try (DbIterator<Long> iterator = select(cursor, columns, sort, 0, PAGE_SIZE - 1)) {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                iterator.forEach(actual::add);
+                Assert.assertNotNull(iterator.getCursor());
+                cursor = iterator.getCursor();
+                pages++;
+            }
+        }
+        Assert.assertEquals((ROWS + PAGE_SIZE - 1) / PAGE_SIZE, pages);
+        Assert.assertEquals(expected, actual);
+    }
+
+    private static DbIterator<Long> select(DbCursor cursor, String[] columns, String sort, int from, int to)
+            throws SQLException {
+        Connection con = db.getConnection();
+        PreparedStatement pstmt = con.prepareStatement("SELECT * FROM item WHERE "
+                + DbUtils.cursorClause(cursor, columns) + sort + DbUtils.limitsClause(from, to));
+        int i = DbUtils.setCursor(1, pstmt, cursor);
+        DbUtils.setLimits(i, pstmt, from, to);
+        return new DbIterator<>(con, pstmt, (c, rs) -> rs.getLong("db_id")).trackCursor(columns);
+    }
+
+}
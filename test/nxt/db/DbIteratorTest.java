@@ -0,0 +1,130 @@
+package nxt.db;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class DbIteratorTest {
+
+    private static final int ROWS = 1000;
+
+    private static TransactionalDb db;
+
+    @BeforeClass
+    public static void init() {
+        db = TestDb.create("db_iterator_test",
+                "CREATE TABLE item (id INT NOT NULL PRIMARY KEY)",
+                "INSERT INTO item (id) SELECT X FROM SYSTEM_RANGE(1, " + ROWS + ")");
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void prefetch() throws SQLException {
+        List<Integer> expected = new ArrayList<>();
+        try (DbIterator<Integer> iterator = items()) {
+            iterator.forEach(expected::add);
+        }
+        Assert.assertEquals(ROWS, expected.size());
+        List<Integer> actual = new ArrayList<>();
+        try (DbIterator<Integer> iterator = items().prefetch(16)) {
+            while (iterator.hasNext()) {
+                actual.add(iterator.next());
+            }
+            Assert.assertFalse(iterator.hasNext());
+        }
+        Assert.assertEquals(expected, actual);
+        assertConnectionsReturned();
+    }
+
+    @Test
+    public void closeWhilePrefetching() throws Exception {
+        try (DbIterator<Integer> iterator = items().prefetch(4)) {
+            Assert.assertEquals(1, (int) iterator.next());
+            Assert.assertEquals(2, (int) iterator.next());
+        }
+        assertConnectionsReturned();
+    }
+
+    @Test
+    public void prefetchFailure() throws Exception {
+        Connection connection = db.getConnection();
+        DbIterator<Integer> iterator = new DbIterator<>(connection, prepare(connection), (con, rs) -> {
+            if (rs.getInt(1) == 10) {
+                throw new SQLException("failure");
+            }
+            return rs.getInt(1);
+        }).prefetch(4);
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+            Assert.fail("Failure not propagated");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        } finally {
+            iterator.close();
+        }
+        Assert.assertEquals(9, count);
+        assertConnectionsReturned();
+    }
+
+    @Test
+    public void noPrefetchInTransaction() throws SQLException {
+        db.beginTransaction();
+        try (DbIterator<Integer> iterator = items().prefetch(4)) {
+            Assert.assertEquals(ROWS, iterator.stream().count());
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Test
+    public void parallelStream() throws SQLException {
+        try (DbIterator<Integer> iterator = items();
+             Stream<Integer> stream = iterator.stream()) {
+            List<Integer> squares = stream.parallel().map(i -> i * i).collect(Collectors.toList());
+            Assert.assertEquals(ROWS, squares.size());
+            for (int i = 0; i < ROWS; i++) {
+                Assert.assertEquals((i + 1) * (i + 1), (int) squares.get(i));
+            }
+        }
+        assertConnectionsReturned();
+    }
+
+    private static DbIterator<Integer> items() throws SQLException {
+        Connection con = db.getConnection();
+        return new DbIterator<>(con, prepare(con), (c, rs) -> rs.getInt(1));
+    }
+
+    private static PreparedStatement prepare(Connection con) throws SQLException {
+        return con.prepareStatement("SELECT id FROM item ORDER BY id");
+    }
+
+    private static void assertConnectionsReturned() {
+        ConnectionPool pool = db.getConnectionPools().get(0);
+        for (int i = 0; i < 50 && pool.getActiveConnections() > 0; i++) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        Assert.assertEquals(0, pool.getActiveConnections());
+    }
+
+}
@@ -0,0 +1,193 @@
+package nxt.db;
+
+import nxt.util.Logger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class DbSnapshotTest {
+
+    private static final List<String> TABLES = Arrays.asList("item", "parent");
+    private static final int ROWS = 20000;
+
+    private static TransactionalDb source;
+    private static TransactionalDb target;
+
+    @BeforeClass
+    public static void init() throws SQLException {
+        source = createDb("db_snapshot_source");
+        target = createDb("db_snapshot_target");
+        Random random = new Random(0);
+        try (Connection con = source.getConnection();
+             Statement stmt = con.createStatement();
+             PreparedStatement pstmt = con.prepareStatement("INSERT INTO item (id, height, amount, flag, name, "
+                     + "description, hash, tags, keys, small, tiny) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            stmt.executeUpdate("INSERT INTO parent (height) SELECT X FROM SYSTEM_RANGE(0, " + (ROWS / 10) + ")");
+            for (int i = 0; i < ROWS; i++) {
+                byte[] hash = new byte[32];
+                random.nextBytes(hash);
+                pstmt.setLong(1, random.nextLong());
+                pstmt.setInt(2, i / 10);
+                pstmt.setLong(3, i % 7 == 0 ? -random.nextInt(1000) : random.nextInt(1000000));
+                pstmt.setBoolean(4, i % 3 == 0);
+                pstmt.setString(5, i % 5 == 0 ? null : "name" + i);
+                pstmt.setString(6, i % 100 == 0 ? "déscription " + i : null);
+                pstmt.setBytes(7, i % 11 == 0 ? null : hash);
+                pstmt.setObject(8, i % 4 == 0 ? null : new Object[] {"tag" + i, "other"});
+                pstmt.setObject(9, i % 9 == 0 ? null : new Object[] {hash, null});
+                pstmt.setShort(10, (short) (i % 300));
+                pstmt.setByte(11, (byte) (i % 100));
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        source.shutdown();
+        target.shutdown();
+    }
+
+    @Before
+    public void clear() throws SQLException {
+        try (Connection con = target.getConnection();
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("SET REFERENTIAL_INTEGRITY FALSE");
+            stmt.executeUpdate("DELETE FROM item");
+            stmt.executeUpdate("DELETE FROM parent");
+            stmt.executeUpdate("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException, SQLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] hash = new byte[32];
+        Arrays.fill(hash, (byte) 7);
+        DbSnapshot.write(source, out, TABLES, 2000, 123L, hash);
+        Logger.logMessage("Snapshot of " + ROWS + " rows is " + out.size() + " bytes");
+        DbSnapshot.Header header = DbSnapshot.load(target, new ByteArrayInputStream(out.toByteArray()), (con, h) -> {});
+        Assert.assertEquals(2000, header.getHeight());
+        Assert.assertEquals(123L, header.getBlockId());
+        Assert.assertArrayEquals(hash, header.getBlockHash());
+        Assert.assertEquals(TABLES, header.getTables());
+        Assert.assertEquals(dump(source), dump(target));
+        try (Connection con = target.getConnection();
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("INSERT INTO parent (height) VALUES (" + (ROWS / 10 + 1) + ")");
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(db_id) FROM parent")) {
+                rs.next();
+                Assert.assertEquals(ROWS / 10 + 2, rs.getLong(1));
+            }
+        }
+    }
+
+    @Test
+    public void corrupted() throws IOException, SQLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DbSnapshot.write(source, out, TABLES, 2000, 123L, new byte[32]);
+        byte[] bytes = out.toByteArray();
+        bytes[bytes.length / 2] ^= 1;
+        try {
+            DbSnapshot.load(target, new ByteArrayInputStream(bytes), (con, h) -> {});
+            Assert.fail("Corrupted snapshot loaded");
+        } catch (IOException expected) {
+        }
+        Assert.assertEquals(0, count(target, "item"));
+        Assert.assertEquals(0, count(target, "parent"));
+        bytes = Arrays.copyOf(out.toByteArray(), out.size() - 1);
+        try {
+            DbSnapshot.load(target, new ByteArrayInputStream(bytes), (con, h) -> {});
+            Assert.fail("Truncated snapshot loaded");
+        } catch (IOException expected) {
+        }
+        Assert.assertEquals(0, count(target, "item"));
+        Assert.assertEquals(0, count(target, "parent"));
+    }
+
+    @Test
+    public void rejected() throws IOException, SQLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DbSnapshot.write(source, out, TABLES, 2000, 123L, new byte[32]);
+        try {
+            DbSnapshot.load(target, new ByteArrayInputStream(out.toByteArray()), (con, h) -> {
+                Assert.assertEquals(ROWS / 10 + 1, count(con, "parent"));
+                throw new IllegalStateException("rejected");
+            });
+            Assert.fail("Rejected snapshot loaded");
+        } catch (IllegalStateException expected) {
+        }
+        Assert.assertEquals(0, count(target, "item"));
+        Assert.assertEquals(0, count(target, "parent"));
+    }
+
+    private static String dump(TransactionalDb db) throws SQLException {
+        StringBuilder sb = new StringBuilder();
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement()) {
+            for (String table : TABLES) {
+                try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " ORDER BY db_id")) {
+                    int columns = rs.getMetaData().getColumnCount();
+                    while (rs.next()) {
+                        for (int i = 1; i <= columns; i++) {
+                            Object value = rs.getObject(i);
+                            if (value instanceof byte[]) {
+                                sb.append(Arrays.toString((byte[]) value));
+                            } else if (value instanceof Object[]) {
+                                sb.append(Arrays.deepToString((Object[]) value));
+                            } else if (value instanceof java.sql.Clob) {
+                                sb.append(rs.getString(i));
+                            } else {
+                                sb.append(value);
+                            }
+                            sb.append(value == null ? "" : value.getClass().getSimpleName()).append(',');
+                        }
+                        sb.append('\n');
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int count(TransactionalDb db, String table) throws SQLException {
+        try (Connection con = db.getConnection()) {
+            return count(con, table);
+        }
+    }
+
+    private static int count(Connection con, String table) {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    private static TransactionalDb createDb(String name) {
+        return TestDb.create(name,
+                "CREATE TABLE parent (db_id IDENTITY, height INT NOT NULL)",
+                "CREATE UNIQUE INDEX parent_height_idx ON parent (height)",
+                "CREATE TABLE item (db_id IDENTITY, id BIGINT NOT NULL, height INT NOT NULL, "
+                        + "amount BIGINT NOT NULL, flag BOOLEAN NOT NULL, name VARCHAR, description CLOB, hash BINARY(32), "
+                        + "tags ARRAY, keys ARRAY, small SMALLINT NOT NULL, tiny TINYINT NOT NULL, "
+                        + "FOREIGN KEY (height) REFERENCES parent (height) ON DELETE CASCADE)");
+    }
+
+}
@@ -0,0 +1,112 @@
+package nxt.db;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class IndexAdvisorTest {
+
+    private static TransactionalDb db;
+
+    @BeforeClass
+    public static void init() {
+        db = TestDb.create("index_advisor_test",
+                "CREATE TABLE item (db_id IDENTITY, id BIGINT NOT NULL, owner_id BIGINT NOT NULL, "
+                        + "hash BINARY(32), timestamp INT NOT NULL, height INT NOT NULL, latest BOOLEAN NOT NULL DEFAULT TRUE)",
+                "CREATE INDEX item_id_idx ON item (id)",
+                "CREATE INDEX item_owner_idx ON item (owner_id)",
+                "CREATE TABLE small (db_id IDENTITY, id BIGINT NOT NULL)",
+                "INSERT INTO item (id, owner_id, hash, timestamp, height) "
+                        + "SELECT X, X % 10, HASH('SHA256', CAST(X AS BINARY), 1), X, X FROM SYSTEM_RANGE(1, 5000)",
+                "INSERT INTO small (id) SELECT X FROM SYSTEM_RANGE(1, 10)",
+                "ANALYZE");
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void indexedLookup() {
+        Assert.assertTrue(analyze("SELECT * FROM item WHERE id = ? AND latest = TRUE").isEmpty());
+    }
+
+    @Test
+    public void tableScan() {
+        List<IndexAdvisor.Advice> advice = analyze("SELECT COUNT(*) FROM item WHERE hash = ? AND latest = TRUE");
+        Assert.assertEquals(1, advice.size());
+        Assert.assertEquals("item", advice.get(0).getTable());
+        Assert.assertNull(advice.get(0).getIndex());
+        Assert.assertEquals(5000, advice.get(0).getRows());
+        Assert.assertEquals(Collections.singletonList("hash"), advice.get(0).getColumns());
+        Assert.assertEquals("CREATE INDEX IF NOT EXISTS advisor_item_hash ON item (hash)", advice.get(0).getDdl());
+    }
+
+    @Test
+    public void equalityBeforeRange() {
+        List<IndexAdvisor.Advice> advice = analyze("SELECT * FROM item WHERE timestamp > ? AND hash = ? ORDER BY height DESC");
+        Assert.assertEquals(1, advice.size());
+        Assert.assertEquals(Arrays.asList("hash", "timestamp"), advice.get(0).getColumns());
+    }
+
+    @Test
+    public void partialIndex() {
+        List<IndexAdvisor.Advice> advice = analyze("SELECT COUNT(*) FROM item WHERE owner_id = ? AND hash = ? AND latest = TRUE");
+        Assert.assertEquals(1, advice.size());
+        Assert.assertEquals("item_owner_idx", advice.get(0).getIndex());
+        Assert.assertEquals(Arrays.asList("owner_id", "hash"), advice.get(0).getColumns());
+    }
+
+    @Test
+    public void updateAndDelete() {
+        Assert.assertEquals(Collections.singletonList("height"),
+                analyze("UPDATE item SET latest = FALSE WHERE height > ?").get(0).getColumns());
+        Assert.assertEquals(Collections.singletonList("height"),
+                analyze("DELETE FROM item WHERE height > ?").get(0).getColumns());
+        Assert.assertTrue(analyze("INSERT INTO item (id, owner_id, timestamp, height) VALUES (?, ?, ?, ?)").isEmpty());
+    }
+
+    @Test
+    public void join() {
+        List<IndexAdvisor.Advice> advice = analyze("SELECT i.* FROM small s, item i WHERE i.height = s.id AND i.timestamp >= ?");
+        Assert.assertEquals(1, advice.size());
+        Assert.assertEquals("item", advice.get(0).getTable());
+    }
+
+    @Test
+    public void smallTable() {
+        Assert.assertTrue(analyze("SELECT * FROM small WHERE id = ?").isEmpty());
+    }
+
+    @Test
+    public void apply() {
+        String sql = "SELECT * FROM item WHERE timestamp = ? AND latest = TRUE";
+        List<IndexAdvisor.Advice> advice = analyze(sql);
+        Assert.assertEquals(1, advice.size());
+        Assert.assertEquals(Collections.singletonList(advice.get(0).getDdl()), IndexAdvisor.apply(db, advice));
+        Assert.assertTrue(analyze(sql).isEmpty());
+    }
+
+    @Test
+    public void schemaUpdate() {
+        List<IndexAdvisor.Advice> advice = analyze("SELECT * FROM item WHERE hash = ?");
+        Assert.assertEquals(
+                "            case 8:\n"
+                + "                apply(\"CREATE INDEX IF NOT EXISTS advisor_item_hash ON item (hash)\");\n"
+                + "            case 9:\n"
+                + "                return;\n",
+                IndexAdvisor.getSchemaUpdate(db, advice));
+        Assert.assertNull(IndexAdvisor.getSchemaUpdate(db, Collections.emptyList()));
+    }
+
+    private static List<IndexAdvisor.Advice> analyze(String sql) {
+        return IndexAdvisor.analyze(db, Collections.singletonList(sql), 1000);
+    }
+
+}
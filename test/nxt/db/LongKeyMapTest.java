@@ -0,0 +1,92 @@
+package nxt.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongKeyMapTest {
+
+    private static final DbKey.LongKeyFactory<Object> dbKeyFactory = new DbKey.LongKeyFactory<Object>("id") {
+        @Override
+        public DbKey newKey(Object o) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(1);
+        LongKeyMap<Object> map = new LongKeyMap<>();
+        Map<Long, Object> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            // few distinct keys, including 0 and negative ones, so that puts and removes hit existing entries
+            long key = (random.nextInt(2000) - 1000) * (random.nextBoolean() ? 1L : 1L << 40);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    Object value = i;
+                    Assert.assertEquals(expected.put(key, value), map.put(key, value));
+                    break;
+                case 2:
+                    Assert.assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    Assert.assertEquals(expected.get(key), map.get(key));
+            }
+            Assert.assertEquals(expected.size(), map.size());
+            if (i % 50000 == 0) {
+                map.clear();
+                expected.clear();
+            }
+        }
+        for (Map.Entry<Long, Object> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        map.put(7, "a");
+        map.put(7, null);
+        Assert.assertNull(map.get(7));
+    }
+
+    @Test
+    public void tableCache() {
+        TableCache cache = new TableCache();
+        DbKey.LinkKeyFactory<Object> linkKeyFactory = new DbKey.LinkKeyFactory<Object>("a", "b") {
+            @Override
+            public DbKey newKey(Object o) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        cache.put(dbKeyFactory.newKey(5), "long");
+        cache.put(linkKeyFactory.newKey(5, 6), "link");
+        Assert.assertEquals("long", cache.get(5));
+        Assert.assertEquals("long", cache.get(dbKeyFactory.newKey(5)));
+        Assert.assertEquals("link", cache.get(linkKeyFactory.newKey(5, 6)));
+        cache.remove(dbKeyFactory.newKey(5));
+        Assert.assertNull(cache.get(5));
+        cache.clear();
+        Assert.assertNull(cache.get(linkKeyFactory.newKey(5, 6)));
+    }
+
+    @Test
+    public void manyLongKeys() {
+        int keys = 100000;
+        Map<DbKey, Object> hashMap = new HashMap<>();
+        TableCache cache = new TableCache();
+        long[] ids = new long[keys];
+        Random random = new Random(2);
+        for (int i = 0; i < keys; i++) {
+            ids[i] = random.nextLong();
+            hashMap.put(dbKeyFactory.newKey(ids[i]), i);
+            cache.put(dbKeyFactory.newKey(ids[i]), i);
+        }
+        for (int i = 0; i < keys; i++) {
+            Assert.assertEquals(hashMap.get(dbKeyFactory.newKey(ids[i])), cache.get(ids[i]));
+            Assert.assertEquals(hashMap.get(dbKeyFactory.newKey(ids[i])), cache.get(dbKeyFactory.newKey(ids[i])));
+        }
+        Assert.assertNull(cache.get(random.nextLong()));
+    }
+
+}
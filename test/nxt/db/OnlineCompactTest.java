@@ -0,0 +1,108 @@
+package nxt.db;
+
+import nxt.util.Logger;
+import org.h2.tools.Server;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OnlineCompactTest {
+
+    private static final int ROWS = 200000;
+
+    @Test
+    public void compactMVStore() throws Exception {
+        Path dir = Files.createTempDirectory("online_compact_test");
+        TransactionalDb db = TestDb.create(TestDb.properties("online_compact_test")
+                .dbUrl("jdbc:h2:" + dir.resolve("db") + ";MV_STORE=TRUE"));
+        try {
+            try (Connection con = db.getConnection();
+                 Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE item (id INT NOT NULL PRIMARY KEY, data VARCHAR)");
+                stmt.executeUpdate("INSERT INTO item (id, data) SELECT X, SPACE(200) FROM SYSTEM_RANGE(1, " + ROWS + ")");
+                stmt.executeUpdate("DELETE FROM item WHERE MOD(id, 10) <> 0");
+                stmt.execute("CHECKPOINT");
+            }
+            File file = dir.resolve("db.mv.db").toFile();
+            long size = file.length();
+            // concurrent reads for as long as the compaction runs, this only checks that they keep seeing the
+            // committed rows, not that compacting is safe under every access pattern
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger badReads = new AtomicInteger();
+            Thread[] readers = new Thread[4];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new Thread(() -> {
+                    while (!done.get()) {
+                        if (count(db) != ROWS / 10) {
+                            badReads.incrementAndGet();
+                        }
+                    }
+                });
+                readers[i].start();
+            }
+            long reduction = db.compact(5000);
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            Assert.assertEquals(0, badReads.get());
+            Logger.logMessage(String.format("MVStore file size %d before, %d after compacting, reduction %d",
+                    size, file.length(), reduction));
+            Assert.assertTrue(reduction >= 0);
+            Assert.assertEquals(ROWS / 10, count(db));
+        } finally {
+            db.shutdown();
+            for (File file : dir.toFile().listFiles()) {
+                Files.delete(file.toPath());
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void pageStore() {
+        TransactionalDb db = TestDb.create("online_compact_test");
+        try {
+            Assert.assertEquals(-1, db.compact(1000));
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void tcpServer() throws Exception {
+        Server server = Server.createTcpServer("-tcpPort", "0").start();
+        try {
+            TransactionalDb db = TestDb.create(TestDb.properties("online_compact_test")
+                    .dbUrl("jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:online_compact_test"));
+            try {
+                Assert.assertEquals(-1, db.compact(1000));
+            } finally {
+                db.shutdown();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static int count(TransactionalDb db) {
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM item")) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+}
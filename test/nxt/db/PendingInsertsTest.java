@@ -0,0 +1,135 @@
+package nxt.db;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PendingInsertsTest {
+
+    private static final int ROWS = 1000;
+
+    private static TransactionalDb db;
+
+    @BeforeClass
+    public static void init() {
+        List<String> schema = new ArrayList<>();
+        for (String table : new String[] {"item", "item_history", "item_batched", "item_single"}) {
+            schema.add("CREATE TABLE " + table + " (db_id IDENTITY, id BIGINT NOT NULL, value INT NOT NULL, "
+                    + "height INT NOT NULL, latest BOOLEAN NOT NULL DEFAULT TRUE)");
+            schema.add("CREATE UNIQUE INDEX " + table + "_id_height_idx ON " + table + " (id, height DESC)");
+        }
+        db = TestDb.create("pending_inserts_test", schema.toArray(new String[0]));
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void flushOnlyWhenTableIsReferenced() throws SQLException {
+        db.beginTransaction();
+        try {
+            DbKey dbKey = new DbKey.LongKeyFactory<Object>("id") {
+                @Override
+                public DbKey newKey(Object o) {
+                    throw new UnsupportedOperationException();
+                }
+            }.newKey(1);
+            PendingInserts pendingInserts = db.getPendingWriter("item", PendingInserts::new);
+            pendingInserts.add(dbKey);
+            save(pendingInserts, "item", 1, 1);
+            Assert.assertEquals(0, count("item_history"));
+            Assert.assertTrue(pendingInserts.contains(dbKey));
+            Assert.assertEquals(1, count("item"));
+            Assert.assertFalse(pendingInserts.contains(dbKey));
+
+            pendingInserts = db.getPendingWriter("item", PendingInserts::new);
+            pendingInserts.add(dbKey);
+            save(pendingInserts, "item", 1, 2);
+            db.rollbackTransaction();
+            Assert.assertEquals(0, count("item"));
+
+            pendingInserts = db.getPendingWriter("item", PendingInserts::new);
+            save(pendingInserts, "item", 2, 1);
+            db.commitTransaction();
+        } finally {
+            db.endTransaction();
+        }
+        Assert.assertEquals(1, count("item"));
+    }
+
+    @Test
+    public void batchedInserts() throws SQLException {
+        for (int height = 0; height < 2; height++) {
+            db.beginTransaction();
+            try (Connection con = db.getConnection()) {
+                for (int i = 0; i < ROWS; i++) {
+                    save(con, "item_single", i, height);
+                }
+                db.commitTransaction();
+            } finally {
+                db.endTransaction();
+            }
+
+            db.beginTransaction();
+            try {
+                PendingInserts pendingInserts = db.getPendingWriter("item_batched", PendingInserts::new);
+                for (int i = 0; i < ROWS; i++) {
+                    save(pendingInserts, "item_batched", i, height);
+                }
+                db.commitTransaction();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        Assert.assertEquals(2 * ROWS, count("item_batched"));
+        Assert.assertEquals(rows("item_single"), rows("item_batched"));
+    }
+
+    private static void save(Connection con, String table, long id, int height) throws SQLException {
+        try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
+                + " SET latest = FALSE WHERE id = ? AND latest = TRUE LIMIT 1")) {
+            pstmt.setLong(1, id);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = con.prepareStatement("MERGE INTO " + table + " (id, value, height, latest) "
+                + "KEY (id, height) VALUES (?, ?, ?, TRUE)")) {
+            pstmt.setLong(1, id);
+            pstmt.setInt(2, (int) id * height);
+            pstmt.setInt(3, height);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static List<String> rows(String table) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, value, height, latest FROM " + table + " ORDER BY id, height")) {
+            while (rs.next()) {
+                rows.add(rs.getLong("id") + ":" + rs.getInt("value") + ":" + rs.getInt("height") + ":" + rs.getBoolean("latest"));
+            }
+        }
+        return rows;
+    }
+
+    private static int count(String table) throws SQLException {
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package nxt.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+
+public class SqlStatisticsTest {
+
+    private static final int ROWS = 1000;
+    private static final String SELECT = "SELECT * FROM item WHERE id >= ? AND id < ?";
+
+    @Test
+    public void buckets() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            long micros = i < 1000 ? i : random.nextLong() >>> (2 + random.nextInt(62));
+            long upperBound = SqlStatistics.upperBound(SqlStatistics.bucket(micros));
+            Assert.assertTrue(micros + " " + upperBound, upperBound >= micros);
+            Assert.assertTrue(micros + " " + upperBound, upperBound <= micros + micros / 4);
+        }
+    }
+
+    @Test
+    public void statistics() throws SQLException {
+        TransactionalDb db = createDb("sql_statistics_test", true);
+        try {
+            for (int i = 0; i < 10; i++) {
+                db.beginTransaction();
+                try {
+                    Assert.assertEquals(10, select(db, i * 10, i * 10 + 10));
+                    db.commitTransaction();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            Assert.assertEquals(5, select(db, 0, 5));
+            try (Connection con = db.getConnection();
+                 PreparedStatement pstmt = con.prepareStatement("UPDATE item SET data = ? WHERE id < ?")) {
+                pstmt.setString(1, "x");
+                pstmt.setInt(2, 20);
+                pstmt.executeUpdate();
+            }
+            SqlStatistics statistics = db.getSqlStatistics();
+            SqlStatistics.Entry select = null;
+            SqlStatistics.Entry update = null;
+            for (SqlStatistics.Entry entry : statistics.getStatements()) {
+                if (entry.getSql().equals(SELECT)) {
+                    select = entry;
+                } else if (entry.getSql().startsWith("UPDATE item")) {
+                    update = entry;
+                }
+            }
+            Assert.assertNotNull(select);
+            Assert.assertEquals(11, select.getCount());
+            Assert.assertEquals(105, select.getRows());
+            Assert.assertTrue(select.getPercentileTime(99) <= select.getMaxTime());
+            Assert.assertTrue(select.getPercentileTime(50) <= select.getPercentileTime(99));
+            Assert.assertNotNull(update);
+            Assert.assertEquals(1, update.getCount());
+            Assert.assertEquals(20, update.getRows());
+            Assert.assertEquals(10, statistics.getTransactions().getCount());
+            statistics.reset();
+            Assert.assertTrue(statistics.getStatements().isEmpty());
+            Assert.assertEquals(0, statistics.getTransactions().getCount());
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void disabled() throws SQLException {
+        TransactionalDb db = createDb("sql_statistics_disabled", false);
+        try {
+            Assert.assertNull(db.getSqlStatistics());
+            Assert.assertEquals(10, select(db, 0, 10));
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    private static int select(TransactionalDb db, int from, int to) throws SQLException {
+        int count = 0;
+        try (Connection con = db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement(SELECT)) {
+            pstmt.setInt(1, from);
+            pstmt.setInt(2, to);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static TransactionalDb createDb(String name, boolean collectStatistics) {
+        return TestDb.create(TestDb.properties(name)
+                        .statementCacheSize(16)
+                        .collectStatistics(collectStatistics),
+                "CREATE TABLE item (id INT NOT NULL PRIMARY KEY, data VARCHAR)",
+                "INSERT INTO item (id, data) SELECT X, 'data' FROM SYSTEM_RANGE(0, " + (ROWS - 1) + ")");
+    }
+
+}
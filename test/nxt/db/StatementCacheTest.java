@@ -0,0 +1,70 @@
+package nxt.db;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class StatementCacheTest {
+
+    private static TransactionalDb db;
+
+    @BeforeClass
+    public static void init() {
+        db = TestDb.create(TestDb.properties("statement_cache_test").statementCacheSize(2),
+                "CREATE TABLE item (id BIGINT NOT NULL PRIMARY KEY, value INT NOT NULL)",
+                "INSERT INTO item (id, value) VALUES (1, 10), (2, 20), (3, 30)");
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void reuseClosedStatements() throws SQLException {
+        String sql = "SELECT value FROM item WHERE id = ?";
+        long hits = db.getStatementCacheHits();
+        db.beginTransaction();
+        try (Connection con = db.getConnection()) {
+            PreparedStatement first = con.prepareStatement(sql);
+            Assert.assertEquals(10, getValue(first, 1));
+            PreparedStatement nested = con.prepareStatement(sql);
+            Assert.assertNotSame(first, nested);
+            Assert.assertEquals(20, getValue(nested, 2));
+            nested.close();
+            first.close();
+            PreparedStatement second = con.prepareStatement(sql);
+            Assert.assertSame(first, second);
+            Assert.assertEquals(hits + 1, db.getStatementCacheHits());
+            Assert.assertEquals(30, getValue(second, 3));
+            second.close();
+
+            // evicted when more than two other statements are used, then a new statement is prepared
+            con.prepareStatement("SELECT id FROM item WHERE value = ?").close();
+            con.prepareStatement("SELECT COUNT(*) FROM item WHERE id > ?").close();
+            PreparedStatement third = con.prepareStatement(sql);
+            Assert.assertNotSame(first, third);
+            Assert.assertTrue(first.isClosed());
+            Assert.assertEquals(10, getValue(third, 1));
+            third.close();
+            db.commitTransaction();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static int getValue(PreparedStatement pstmt, long id) throws SQLException {
+        pstmt.setLong(1, id);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            Assert.assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+}
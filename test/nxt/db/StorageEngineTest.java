@@ -0,0 +1,161 @@
+package nxt.db;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/*
+ Runs a simulated block sync on the PageStore and on the MVStore storage engine, both with MVCC: every block updates
+ a versioned table in one database transaction, while API like readers query the latest rows. Both engines must end
+ up with the same rows.
+ */
+public class StorageEngineTest {
+
+    private static final int KEYS = 2000;
+    private static final int BLOCKS = 20;
+    private static final int UPDATES_PER_BLOCK = 100;
+    private static final int READERS = 2;
+
+    private static Path dir;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        dir = Files.createTempDirectory("storage_engine_test");
+    }
+
+    @AfterClass
+    public static void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void enginesGiveSameResults() throws Exception {
+        Result pageStore = run("pagestore", false);
+        Result mvStore = run("mvstore", true);
+        Assert.assertEquals(BLOCKS * UPDATES_PER_BLOCK, pageStore.rows);
+        Assert.assertEquals(pageStore.rows, mvStore.rows);
+        Assert.assertEquals(pageStore.checksum, mvStore.checksum);
+        Assert.assertEquals(pageStore.latest, mvStore.latest);
+        Assert.assertTrue(mvStore.reads > 0);
+    }
+
+    private static final class Result {
+        private long rows;
+        private long checksum;
+        private long latest;
+        private long reads;
+    }
+
+    private static Result run(String name, boolean mvStore) throws Exception {
+        Result result = new Result();
+        String dbFile = dir.resolve(name).resolve("nxt").toString();
+        TransactionalDb db = TestDb.create(TestDb.properties(name)
+                        .dbUrl("jdbc:h2:" + dbFile + ";DB_CLOSE_ON_EXIT=FALSE;MVCC=TRUE;MV_STORE=" + (mvStore ? "TRUE" : "FALSE"))
+                        .maxConnections(READERS + 2),
+                "CREATE TABLE account (db_id IDENTITY, id BIGINT NOT NULL, balance BIGINT NOT NULL, "
+                        + "height INT NOT NULL, latest BOOLEAN NOT NULL DEFAULT TRUE)",
+                "CREATE UNIQUE INDEX account_id_height_idx ON account (id, height DESC)",
+                "CREATE INDEX account_height_idx ON account (height)");
+        try {
+            Random random = new Random(42);
+            applyBlocks(db, random, 0, BLOCKS / 2);
+
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicLong reads = new AtomicLong();
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                Thread reader = new Thread(() -> {
+                    Random readerRandom = new Random();
+                    while (!done.get()) {
+                        try (Connection con = db.getConnection();
+                             PreparedStatement pstmt = con.prepareStatement("SELECT COUNT(*) FROM account WHERE id = ? AND latest = TRUE")) {
+                            pstmt.setLong(1, readerRandom.nextInt(KEYS));
+                            try (ResultSet rs = pstmt.executeQuery()) {
+                                rs.next();
+                                if (rs.getInt(1) > 1) {
+                                    throw new IllegalStateException("More than one latest row");
+                                }
+                            }
+                            reads.incrementAndGet();
+                        } catch (Exception e) {
+                            failure.set(e);
+                            return;
+                        }
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+            applyBlocks(db, random, BLOCKS / 2, BLOCKS);
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            Assert.assertNull(failure.get());
+            result.reads = reads.get();
+
+            try (Connection con = db.getConnection();
+                 Statement stmt = con.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(balance * (height + 1)), "
+                         + "SUM(CASE WHEN latest THEN 1 ELSE 0 END) FROM account")) {
+                rs.next();
+                result.rows = rs.getLong(1);
+                result.checksum = rs.getLong(2);
+                result.latest = rs.getLong(3);
+            }
+        } finally {
+            db.shutdown();
+        }
+        return result;
+    }
+
+    private static void applyBlocks(TransactionalDb db, Random random, int from, int to) throws SQLException {
+        for (int height = from; height < to; height++) {
+            db.beginTransaction();
+            try (Connection con = db.getConnection();
+                 PreparedStatement pstmtUpdate = con.prepareStatement("UPDATE account SET latest = FALSE WHERE id = ? AND latest = TRUE");
+                 PreparedStatement pstmtInsert = con.prepareStatement("INSERT INTO account (id, balance, height) VALUES (?, ?, ?)")) {
+                Set<Long> ids = new HashSet<>();
+                while (ids.size() < UPDATES_PER_BLOCK) {
+                    ids.add((long) random.nextInt(KEYS));
+                }
+                for (long id : ids) {
+                    pstmtUpdate.setLong(1, id);
+                    pstmtUpdate.executeUpdate();
+                    pstmtInsert.setLong(1, id);
+                    pstmtInsert.setLong(2, random.nextInt(1000000));
+                    pstmtInsert.setInt(3, height);
+                    pstmtInsert.executeUpdate();
+                }
+                db.commitTransaction();
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+
+}
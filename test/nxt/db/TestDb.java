@@ -0,0 +1,38 @@
+package nxt.db;
+
+/*
+ In-memory H2 databases for the nxt.db tests. The schema statements are applied as database versions 1..n.
+ */
+final class TestDb {
+
+    static BasicDb.DbProperties properties(String name) {
+        return new BasicDb.DbProperties()
+                .dbUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .dbUsername("sa")
+                .dbPassword("sa")
+                .maxConnections(10)
+                .loginTimeout(10)
+                .defaultLockTimeout(10000)
+                .maxMemoryRows(1000000)
+                .shutdownCompact(false);
+    }
+
+    static TransactionalDb create(String name, String... schema) {
+        return create(properties(name), schema);
+    }
+
+    static TransactionalDb create(BasicDb.DbProperties properties, String... schema) {
+        TransactionalDb db = new TransactionalDb(properties);
+        db.init(new DbVersion() {
+            @Override
+            protected void update(int nextUpdate) {
+                for (int i = nextUpdate - 1; i < schema.length; i++) {
+                    apply(schema[i]);
+                }
+            }
+        });
+        return db;
+    }
+
+    private TestDb() {}
+}
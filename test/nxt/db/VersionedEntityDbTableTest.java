@@ -0,0 +1,202 @@
+package nxt.db;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ Runs rollback (fork resolution) and trim over a versioned table with many keys modified in every block, once with
+ the former per key statements and once with VersionedEntityDbTable. Both must leave the table in the same state.
+ This only checks the results, no speedup of the new statements over the per key ones was measured with embedded H2.
+ */
+public class VersionedEntityDbTableTest {
+
+    private static final int KEYS = 2000;
+    private static final int BLOCKS = 30;
+    private static final int ROLLBACK_HEIGHT = 20;
+    private static final int TRIM_HEIGHT = 25;
+
+    private static final DbKey.LongKeyFactory<Object> dbKeyFactory = new DbKey.LongKeyFactory<Object>("id") {
+        @Override
+        public DbKey newKey(Object o) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private static TransactionalDb db;
+
+    @BeforeClass
+    public static void init() {
+        db = TestDb.create("versioned_entity_db_table_test");
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void rollbackMatchesPerKeyRollback() throws SQLException {
+        populate("rollback_per_key");
+        populate("rollback_set");
+
+        db.beginTransaction();
+        try (Connection con = db.getConnection()) {
+            perKeyRollback(con, "rollback_per_key", ROLLBACK_HEIGHT);
+            db.commitTransaction();
+        } finally {
+            db.endTransaction();
+        }
+
+        db.beginTransaction();
+        try {
+            VersionedEntityDbTable.rollback(db, "rollback_set", ROLLBACK_HEIGHT, dbKeyFactory);
+            db.commitTransaction();
+        } finally {
+            db.endTransaction();
+        }
+
+        List<String> expected = snapshot("rollback_per_key");
+        List<String> actual = snapshot("rollback_set");
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, actual);
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM rollback_set"
+                     + " WHERE latest = TRUE GROUP BY id HAVING COUNT(*) > 1")) {
+            Assert.assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void trimMatchesPerKeyTrim() throws SQLException {
+        populate("trim_per_key");
+        populate("trim_chunked");
+
+        db.beginTransaction();
+        try (Connection con = db.getConnection()) {
+            perKeyTrim(con, "trim_per_key", TRIM_HEIGHT);
+            db.commitTransaction();
+        } finally {
+            db.endTransaction();
+        }
+
+        db.beginTransaction();
+        try {
+            VersionedEntityDbTable.trim(db, "trim_chunked", TRIM_HEIGHT, dbKeyFactory);
+            db.commitTransaction();
+        } finally {
+            db.endTransaction();
+        }
+
+        List<String> expected = snapshot("trim_per_key");
+        List<String> actual = snapshot("trim_chunked");
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, actual);
+    }
+
+    /*
+     Every key gets a new version in some of the blocks. Keys divisible by 10 are deleted in their last version,
+     keys divisible by 7 are only created above the rollback height.
+     */
+    private static void populate(String table) throws SQLException {
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE " + table + " (db_id IDENTITY, id BIGINT NOT NULL, value INT NOT NULL, "
+                    + "height INT NOT NULL, latest BOOLEAN NOT NULL DEFAULT TRUE)");
+            stmt.executeUpdate("CREATE UNIQUE INDEX " + table + "_id_height_idx ON " + table + " (id, height DESC)");
+            stmt.executeUpdate("CREATE INDEX " + table + "_height_idx ON " + table + " (height)");
+            try (PreparedStatement pstmt = con.prepareStatement("INSERT INTO " + table
+                    + " (id, value, height, latest) VALUES (?, ?, ?, ?)")) {
+                for (int id = 0; id < KEYS; id++) {
+                    int first = id % 7 == 0 ? ROLLBACK_HEIGHT + 1 + id % (BLOCKS - ROLLBACK_HEIGHT - 1) : id % 3;
+                    int last = first;
+                    for (int height = first + 1; height < BLOCKS; height++) {
+                        if ((id + height) % 4 == 0) {
+                            last = height;
+                        }
+                    }
+                    for (int height = first; height <= last; height++) {
+                        if (height != first && height != last && (id + height) % 4 != 0) {
+                            continue;
+                        }
+                        pstmt.setLong(1, id);
+                        pstmt.setInt(2, id + height);
+                        pstmt.setInt(3, height);
+                        pstmt.setBoolean(4, height == last && id % 10 != 0);
+                        pstmt.addBatch();
+                    }
+                }
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    private static void perKeyRollback(Connection con, String table, int height) throws SQLException {
+        try (PreparedStatement pstmtSelectToDelete = con.prepareStatement("SELECT DISTINCT id FROM " + table
+                + " WHERE height > ?");
+             PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + " WHERE height > ?");
+             PreparedStatement pstmtSetLatest = con.prepareStatement("UPDATE " + table
+                     + " SET latest = TRUE WHERE id = ? AND height = (SELECT MAX(height) FROM " + table
+                     + " WHERE id = ?)")) {
+            pstmtSelectToDelete.setInt(1, height);
+            List<Long> ids = new ArrayList<>();
+            try (ResultSet rs = pstmtSelectToDelete.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong("id"));
+                }
+            }
+            pstmtDelete.setInt(1, height);
+            pstmtDelete.executeUpdate();
+            for (long id : ids) {
+                pstmtSetLatest.setLong(1, id);
+                pstmtSetLatest.setLong(2, id);
+                pstmtSetLatest.executeUpdate();
+            }
+        }
+    }
+
+    private static void perKeyTrim(Connection con, String table, int height) throws SQLException {
+        try (PreparedStatement pstmtSelect = con.prepareStatement("SELECT id, MAX(height) AS max_height FROM " + table
+                + " WHERE height < ? GROUP BY id HAVING COUNT(DISTINCT height) > 1");
+             PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table
+                     + " WHERE id = ? AND height < ? AND height >= 0");
+             PreparedStatement pstmtDeleteDeleted = con.prepareStatement("DELETE FROM " + table
+                     + " WHERE height < ? AND height >= 0 AND latest = FALSE AND (id) NOT IN (SELECT (id) FROM "
+                     + table + " WHERE height >= ?)")) {
+            pstmtSelect.setInt(1, height);
+            try (ResultSet rs = pstmtSelect.executeQuery()) {
+                while (rs.next()) {
+                    pstmtDelete.setLong(1, rs.getLong("id"));
+                    pstmtDelete.setInt(2, rs.getInt("max_height"));
+                    pstmtDelete.executeUpdate();
+                }
+            }
+            pstmtDeleteDeleted.setInt(1, height);
+            pstmtDeleteDeleted.setInt(2, height);
+            pstmtDeleteDeleted.executeUpdate();
+        }
+    }
+
+    private static List<String> snapshot(String table) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, value, height, latest FROM " + table + " ORDER BY id, height")) {
+            while (rs.next()) {
+                rows.add(rs.getLong("id") + ":" + rs.getInt("value") + ":" + rs.getInt("height") + ":" + rs.getBoolean("latest"));
+            }
+        }
+        return rows;
+    }
+
+}
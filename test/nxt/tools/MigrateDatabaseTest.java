@@ -0,0 +1,108 @@
+package nxt.tools;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class MigrateDatabaseTest {
+
+    private static Path dir;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        dir = Files.createTempDirectory("migrate_database_test");
+    }
+
+    @AfterClass
+    public static void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void setStorageEngine() {
+        Assert.assertEquals("jdbc:h2:./nxt_db/nxt;DB_CLOSE_ON_EXIT=FALSE;MVCC=TRUE;MV_STORE=TRUE",
+                MigrateDatabase.setStorageEngine("jdbc:h2:./nxt_db/nxt;DB_CLOSE_ON_EXIT=FALSE;MVCC=TRUE;MV_STORE=FALSE", true));
+        Assert.assertEquals("jdbc:h2:./nxt_db/nxt;MVCC=TRUE;MV_STORE=FALSE",
+                MigrateDatabase.setStorageEngine("jdbc:h2:./nxt_db/nxt;mv_store=true;MVCC=TRUE", false));
+    }
+
+    @Test
+    public void migrateAndBack() throws IOException, SQLException {
+        String dbUrl = "jdbc:h2:" + dir.resolve("nxt") + ";DB_CLOSE_ON_EXIT=FALSE;MVCC=TRUE";
+        String pageStoreUrl = MigrateDatabase.setStorageEngine(dbUrl, false);
+        String mvStoreUrl = MigrateDatabase.setStorageEngine(dbUrl, true);
+        try (Connection con = DriverManager.getConnection(pageStoreUrl, "sa", "sa");
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE item (db_id IDENTITY, id BIGINT NOT NULL, name VARCHAR, "
+                    + "height INT NOT NULL, latest BOOLEAN NOT NULL DEFAULT TRUE)");
+            stmt.executeUpdate("CREATE UNIQUE INDEX item_id_height_idx ON item (id, height DESC)");
+            stmt.executeUpdate("CREATE TRIGGER FTL_ITEM AFTER INSERT,UPDATE,DELETE ON PUBLIC.ITEM "
+                    + "FOR EACH ROW CALL \"nxt.db.FullTextTrigger\"");
+            for (int i = 0; i < 100; i++) {
+                stmt.executeUpdate("INSERT INTO item (id, name, height) VALUES (" + i + ", 'item " + i + "', " + i + ")");
+            }
+            stmt.executeUpdate("DELETE FROM item WHERE id >= 90");
+            stmt.execute("SHUTDOWN");
+        }
+        List<String> expected = snapshot(pageStoreUrl);
+
+        MigrateDatabase.migrate(dbUrl, true, dir.toString(), "sa", "sa");
+        Assert.assertTrue(dir.resolve("nxt.mv.db").toFile().exists());
+        Assert.assertTrue(dir.resolve("nxt.h2.db.bak").toFile().exists());
+        Assert.assertFalse(dir.resolve("nxt.h2.db").toFile().exists());
+        Assert.assertFalse(dir.resolve("backup.sql.gz").toFile().exists());
+        Assert.assertEquals(expected, snapshot(mvStoreUrl));
+
+        MigrateDatabase.migrate(dbUrl, false, dir.toString(), "sa", "sa");
+        Assert.assertTrue(dir.resolve("nxt.h2.db").toFile().exists());
+        Assert.assertFalse(dir.resolve("nxt.mv.db").toFile().exists());
+        Assert.assertEquals(expected, snapshot(pageStoreUrl));
+        try (Connection con = DriverManager.getConnection(pageStoreUrl, "sa", "sa");
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("INSERT INTO item (id, name, height) VALUES (100, 'item 100', 100)");
+            try (ResultSet rs = stmt.executeQuery("SELECT db_id FROM item WHERE id = 100")) {
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals(101, rs.getLong(1));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT JAVA_CLASS FROM INFORMATION_SCHEMA.TRIGGERS "
+                    + "WHERE TRIGGER_NAME = 'FTL_ITEM'")) {
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals("nxt.db.FullTextTrigger", rs.getString(1));
+            }
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+    private static List<String> snapshot(String dbUrl) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection con = DriverManager.getConnection(dbUrl, "sa", "sa");
+             Statement stmt = con.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM item ORDER BY db_id")) {
+                while (rs.next()) {
+                    rows.add(rs.getLong("db_id") + ":" + rs.getLong("id") + ":" + rs.getString("name") + ":"
+                            + rs.getInt("height") + ":" + rs.getBoolean("latest"));
+                }
+            }
+            stmt.execute("SHUTDOWN");
+        }
+        return rows;
+    }
+
+}
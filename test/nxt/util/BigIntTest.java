@@ -1,7 +1,9 @@
 package nxt.util;
 
 import nxt.Nxt;
+import nxt.computation.Commons;
 import nxt.computation.ComputationConstants;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigInteger;
@@ -24,4 +26,26 @@ public class BigIntTest {
         System.out.println(myTarget.toString());
         System.out.println( String.format("%032x", myTarget));
     }
+
+    @Test
+    public void workTargetTest(){
+        long[] compactTargets = {1, 2, 1000, 92233720368547760L, Long.MAX_VALUE / 100, Long.MAX_VALUE};
+        for (long compactTarget : compactTargets) {
+            BigInteger myTarget = ComputationConstants.MAXIMAL_WORK_TARGET;
+            myTarget = myTarget.divide(BigInteger.valueOf(Long.MAX_VALUE/100));
+            myTarget = myTarget.multiply(BigInteger.valueOf(compactTarget));
+            if(myTarget.compareTo(ComputationConstants.MAXIMAL_WORK_TARGET) == 1)
+                myTarget = ComputationConstants.MAXIMAL_WORK_TARGET;
+            int[] target = Commons.getWorkTarget(compactTarget);
+            Assert.assertArrayEquals(Convert.bigintToInts(myTarget, 4), target);
+
+            int[] below = new int[4];
+            int[] above = target.clone();
+            above[0]++;
+            Assert.assertEquals(0, Convert.compareUnsigned(target, target.clone()));
+            Assert.assertTrue(Convert.compareUnsigned(below, target) < 0);
+            Assert.assertTrue(Convert.compareUnsigned(above, target) > 0);
+        }
+        Assert.assertTrue(Convert.compareUnsigned(new int[]{0x7fffffff, 0, 0, 0}, new int[]{0x80000000, 0, 0, 0}) < 0);
+    }
 }
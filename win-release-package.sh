@@ -14,7 +14,7 @@ FILES="changelogs conf html lib resource contrib logs"
 FILES="${FILES} elastic.exe elasticservice.exe"
 FILES="${FILES} 3RD-PARTY-LICENSES.txt AUTHORS.txt LICENSE.txt"
 FILES="${FILES} DEVELOPERS-GUIDE.md OPERATORS-GUIDE.md README.md README.txt USERS-GUIDE.md"
-FILES="${FILES} run.bat run.sh run-desktop.sh start.sh stop.sh compact.sh compact.bat sign.sh"
+FILES="${FILES} run.bat run.sh run-desktop.sh start.sh stop.sh compact.sh compact.bat migrate.sh migrate.bat sign.sh"
 FILES="${FILES} elastic.policy elasticdesktop.policy Elastic_Wallet.url Dockerfile"
 
 # unix2dos *.bat